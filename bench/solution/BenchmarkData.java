@@ -0,0 +1,44 @@
+package solution;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The data sets bundled in data/ that the benchmarks load. The data directory is ./data unless the
+ * scheduler.data system property says otherwise
+ */
+public enum BenchmarkData {
+	MINI("mini_aircraft.csv", "mini_crew.json", "mini_routes.xml", "mini_passengers.db"),
+	FULL("aircraft.csv", "crew.json", "routes.xml", "passengernumbers.db");
+
+	private final String aircraft;
+	private final String crew;
+	private final String routes;
+	private final String passengerNumbers;
+
+	BenchmarkData(String aircraft, String crew, String routes, String passengerNumbers) {
+		this.aircraft = aircraft;
+		this.crew = crew;
+		this.routes = routes;
+		this.passengerNumbers = passengerNumbers;
+	}
+
+	Path aircraft() {
+		return dataDir().resolve(aircraft);
+	}
+
+	Path crew() {
+		return dataDir().resolve(crew);
+	}
+
+	Path routes() {
+		return dataDir().resolve(routes);
+	}
+
+	Path passengerNumbers() {
+		return dataDir().resolve(passengerNumbers);
+	}
+
+	private static Path dataDir() {
+		return Paths.get(System.getProperty("scheduler.data", "./data"));
+	}
+}
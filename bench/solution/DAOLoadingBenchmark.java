@@ -0,0 +1,58 @@
+package solution;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.DataLoadingException;
+
+/**
+ * Times loading each of the bundled data files into a fresh DAO
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DAOLoadingBenchmark {
+
+	@Param({"MINI", "FULL"})
+	public BenchmarkData data;
+
+	@Benchmark
+	public AircraftDAO loadAircraft() throws DataLoadingException {
+		AircraftDAO aircraft = new AircraftDAO();
+		aircraft.loadAircraftData(data.aircraft());
+		return aircraft;
+	}
+
+	@Benchmark
+	public CrewDAO loadCrew() throws DataLoadingException {
+		CrewDAO crew = new CrewDAO();
+		crew.loadCrewData(data.crew());
+		return crew;
+	}
+
+	@Benchmark
+	public RouteDAO loadRoutes() throws DataLoadingException {
+		RouteDAO routes = new RouteDAO();
+		routes.loadRouteData(data.routes());
+		return routes;
+	}
+
+	@Benchmark
+	public PassengerNumbersDAO loadPassengerNumbers() throws DataLoadingException {
+		PassengerNumbersDAO passengerNumbers = new PassengerNumbersDAO();
+		passengerNumbers.loadPassengerNumbersData(data.passengerNumbers());
+		return passengerNumbers;
+	}
+}
@@ -0,0 +1,139 @@
+package solution;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.Aircraft;
+import baseclasses.DataLoadingException;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * Times the lookups the schedulers make most, against DAOs loaded once per trial. Each call looks up
+ * the next of a fixed set of keys taken from the data, so every run asks for the same things in the same order
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DAOLookupBenchmark {
+
+	//the first day of the bundled passenger numbers, and how many days from it to look up
+	private static final LocalDate FIRST_DAY = LocalDate.of(2020, 7, 1);
+	private static final int DAYS = 28;
+
+	@Param({"MINI", "FULL"})
+	public BenchmarkData data;
+
+	private AircraftDAO aircraft;
+	private CrewDAO crew;
+	private RouteDAO routes;
+	private PassengerNumbersDAO passengerNumbers;
+
+	//the keys to look up, and which one is next
+	private int[] seats;
+	private String[] bases;
+	private String[] typeCodes;
+	private LocalDate[] dates;
+	private int[] flightNumbers;
+	private LocalDate[] flightDates;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void load() throws DataLoadingException {
+		aircraft = new AircraftDAO();
+		aircraft.loadAircraftData(data.aircraft());
+		crew = new CrewDAO();
+		crew.loadCrewData(data.crew());
+		routes = new RouteDAO();
+		routes.loadRouteData(data.routes());
+		passengerNumbers = new PassengerNumbersDAO();
+		passengerNumbers.loadPassengerNumbersData(data.passengerNumbers());
+
+		Set<Integer> seatCounts = new LinkedHashSet<>();
+		seatCounts.add(0);
+		for(Aircraft a : aircraft.getAllAircraft()) {
+			seatCounts.add(a.getSeats());
+		}
+		seats = seatCounts.stream().mapToInt(Integer::intValue).toArray();
+
+		Set<String> pairs = new LinkedHashSet<>();
+		for(Pilot p : crew.getAllPilots()) {
+			for(String type : p.getTypeRatings()) {
+				pairs.add(p.getHomeBase() + "|" + type);
+			}
+		}
+		bases = new String[pairs.size()];
+		typeCodes = new String[pairs.size()];
+		int i = 0;
+		for(String pair : pairs) {
+			bases[i] = pair.substring(0, pair.indexOf('|'));
+			typeCodes[i] = pair.substring(pair.indexOf('|') + 1);
+			i++;
+		}
+
+		dates = new LocalDate[DAYS];
+		for(int d = 0; d < DAYS; d++) {
+			dates[d] = FIRST_DAY.plusDays(d);
+		}
+
+		List<Integer> numbers = new ArrayList<>();
+		List<LocalDate> days = new ArrayList<>();
+		for(LocalDate day : dates) {
+			for(Route r : routes.findRoutesbyDate(day)) {
+				numbers.add(r.getFlightNumber());
+				days.add(day);
+			}
+		}
+		flightNumbers = numbers.stream().mapToInt(Integer::intValue).toArray();
+		flightDates = days.toArray(new LocalDate[0]);
+	}
+
+	private int next(int length) {
+		next = next + 1 < length ? next + 1 : 0;
+		return next;
+	}
+
+	@Benchmark
+	public List<Aircraft> findAircraftBySeats() {
+		return aircraft.findAircraftBySeats(seats[next(seats.length)]);
+	}
+
+	@Benchmark
+	public List<Pilot> findPilotsByHomeBaseAndTypeRating() {
+		int k = next(bases.length);
+		return crew.findPilotsByHomeBaseAndTypeRating(typeCodes[k], bases[k]);
+	}
+
+	@Benchmark
+	public List<Route> findRoutesbyDate() {
+		return routes.findRoutesbyDate(dates[next(dates.length)]);
+	}
+
+	@Benchmark
+	public int getPassengerNumbersFor() {
+		if(flightNumbers.length == 0) {
+			return -1;
+		}
+		int k = next(flightNumbers.length);
+		return passengerNumbers.getPassengerNumbersFor(flightNumbers[k], flightDates[k]);
+	}
+}
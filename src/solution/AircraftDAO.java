@@ -1,11 +1,15 @@
 package solution;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import baseclasses.Aircraft;
 import baseclasses.Aircraft.Manufacturer;
@@ -22,6 +26,24 @@ public class AircraftDAO implements IAircraftDAO {
 	//The data structure we'll use to store the aircraft we've loaded
 	List<Aircraft> aircraft = new ArrayList<>();
 	
+	//Indexes built as aircraft are loaded, so the find methods don't have to scan the whole list
+	TreeMap<Integer, List<Aircraft>> bySeats = new TreeMap<>();
+	Map<String, Aircraft> byTailCode = new HashMap<>();
+	Map<String, List<Aircraft>> byType = new HashMap<>();
+	Map<String, List<Aircraft>> byStartingPosition = new HashMap<>();
+	
+	//The manufacturer names, as bytes, for matching against the CSV without building a String
+	static final Manufacturer[] MANUFACTURERS = Manufacturer.values();
+	static final byte[][] MANUFACTURER_NAMES = new byte[MANUFACTURERS.length][];
+	static {
+		for(int i=0; i<MANUFACTURERS.length; i++) {
+			MANUFACTURER_NAMES[i] = MANUFACTURERS[i].name().getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+	
+	//the number of columns in an aircraft CSV file
+	static final int FIELDS = 7;
+	
 	/**
 	 * Loads the aircraft data from the specified file, adding them to the currently loaded aircraft
 	 * Multiple calls to this function, perhaps on different files, would thus be cumulative
@@ -32,78 +54,234 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public void loadAircraftData(Path p) throws DataLoadingException {	
-		try {
-			//open the file
-			BufferedReader reader = Files.newBufferedReader(p);
+		//map the file into memory and find the fields by scanning its bytes, so the only
+		//objects made per row are the strings we keep and the Aircraft itself
+		try(FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new DataLoadingException(new IOException("Aircraft file too large to map: " + p));
+			}
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int limit = buf.limit();
 			
-			//read the file line by line
-			String line = "";
+			//where each field starts and ends in the buffer, reused for every line
+			int[] starts = new int[FIELDS];
+			int[] ends = new int[FIELDS];
+			byte[] scratch = new byte[64];
 			
 			//skip the first line of the file - headers
-			reader.readLine();
+			int pos = nextLine(buf, lineEnd(buf, 0, limit), limit);
 			
-			while( (line = reader.readLine()) != null) {
-				//each line has fields separated by commas, split into an array of fields
-				String[] fields = line.split(","); 
-
-				if(fields.length != 7) {
+			while(pos < limit) {
+				int end = lineEnd(buf, pos, limit);
+				
+				//each line has fields separated by commas, find where they are
+				//and count them the same way String.split(",") does, ignoring empty ones at the end
+				int fields = 0;
+				int nonEmptyFields = 0;
+				int fieldStart = pos;
+				for(int i=pos; i<=end; i++) {
+					if(i == end || buf.get(i) == ',') {
+						if(fields < FIELDS) {
+							starts[fields] = fieldStart;
+							ends[fields] = i;
+						}
+						fields++;
+						if(i > fieldStart) {
+							nonEmptyFields = fields;
+						}
+						fieldStart = i + 1;
+					}
+				}
+				fields = (end == pos) ? 1 : nonEmptyFields;
+				if(fields != FIELDS) {
 					throw new DataLoadingException() ;
 				}
 				
-				//put some of the fields into variables: check which fields are where atop the CSV file itself
-				String tailcode = fields[0];
-				String model = fields[1];  
-				String type = fields[2];
-				Manufacturer manufacturer = Manufacturer.valueOf(fields[3].toUpperCase()); 
-				String startingPosition = fields[4]; 
-				int seats = Integer.parseInt(fields[5]);
-				int cabinCrewRequired = Integer.parseInt(fields[6]); 
-				
-				
-				//create an Aircraft object, and set its properties
+				//create an Aircraft object, and set its properties: check which fields are where atop the CSV file itself
 				Aircraft a = new Aircraft();
-				a.setTailCode(tailcode);
-				a.setModel(model);
-				a.setTypeCode(type);
-				a.setManufacturer(manufacturer);
-				a.setStartingPosition(startingPosition);
-				a.setSeats(seats);
-				a.setCabinCrewRequired(cabinCrewRequired);
+				scratch = ensureCapacity(scratch, end - pos);
+				a.setTailCode(string(buf, starts[0], ends[0], scratch));
+				a.setModel(string(buf, starts[1], ends[1], scratch));
+				a.setTypeCode(string(buf, starts[2], ends[2], scratch));
+				a.setManufacturer(manufacturer(buf, starts[3], ends[3]));
+				a.setStartingPosition(string(buf, starts[4], ends[4], scratch));
+				a.setSeats(parseInt(buf, starts[5], ends[5]));
+				a.setCabinCrewRequired(parseInt(buf, starts[6], ends[6]));
 				
-				//add the aircraft to our list
-				aircraft.add(a);
+				//add the aircraft to our list and indexes
+				add(a);
 				
+				pos = nextLine(buf, end, limit);
 			}
-			reader.close();
 		}
-		
-		catch (IOException ioe) {
-			//There was a problem reading the file
-			throw new DataLoadingException(ioe);
+		catch (IOException | IllegalArgumentException e) {
+			//There was a problem reading the file, or a field that couldn't be understood
+			throw new DataLoadingException(e);
+		}
+	}
+	
+	/**
+	 * Finds the end of the line starting at pos, i.e. the position of its line break or the end of the buffer
+	 */
+	private static int lineEnd(MappedByteBuffer buf, int pos, int limit) {
+		while(pos < limit) {
+			byte b = buf.get(pos);
+			if(b == '\n' || b == '\r') {
+				break;
+			}
+			pos++;
+		}
+		return pos;
+	}
+	
+	/**
+	 * Steps over the line break at end, which may be \n, \r or \r\n, returning where the next line starts
+	 */
+	private static int nextLine(MappedByteBuffer buf, int end, int limit) {
+		if(end < limit && buf.get(end) == '\r') {
+			end++;
+		}
+		if(end < limit && buf.get(end) == '\n') {
+			end++;
+		}
+		return end;
+	}
+	
+	private static byte[] ensureCapacity(byte[] scratch, int length) {
+		if(scratch.length < length) {
+			return new byte[Math.max(length, scratch.length * 2)];
+		}
+		return scratch;
+	}
+	
+	/**
+	 * Decodes the UTF-8 bytes between start and end into a String, via the scratch array
+	 */
+	private static String string(MappedByteBuffer buf, int start, int end, byte[] scratch) {
+		for(int i=start; i<end; i++) {
+			scratch[i - start] = buf.get(i);
+		}
+		return new String(scratch, 0, end - start, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Matches the bytes between start and end against the manufacturer names, ignoring case
+	 * @throws IllegalArgumentException if no manufacturer has that name, as Manufacturer.valueOf() would
+	 */
+	private static Manufacturer manufacturer(MappedByteBuffer buf, int start, int end) {
+		for(int m=0; m<MANUFACTURERS.length; m++) {
+			byte[] name = MANUFACTURER_NAMES[m];
+			if(name.length != end - start) {
+				continue;
+			}
+			int i = 0;
+			while(i < name.length) {
+				byte b = buf.get(start + i);
+				if(b >= 'a' && b <= 'z') {
+					b -= 'a' - 'A';
+				}
+				if(b != name[i]) {
+					break;
+				}
+				i++;
+			}
+			if(i == name.length) {
+				return MANUFACTURERS[m];
+			}
+		}
+		throw new IllegalArgumentException("No manufacturer in aircraft file matching " + new String(bytes(buf, start, end), StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Parses the bytes between start and end as a decimal int, following the same rules as Integer.parseInt()
+	 * @throws NumberFormatException if they aren't a valid int
+	 */
+	private static int parseInt(MappedByteBuffer buf, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if(i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+			negative = buf.get(i) == '-';
+			i++;
+		}
+		if(i == end) {
+			throw new NumberFormatException("For input string: \"" + new String(bytes(buf, start, end), StandardCharsets.UTF_8) + "\"");
+		}
+		//accumulate negatively so that Integer.MIN_VALUE can be parsed too
+		long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		long result = 0;
+		for(; i<end; i++) {
+			int digit = buf.get(i) - '0';
+			result = result * 10 - digit;
+			if(digit < 0 || digit > 9 || result < limit) {
+				throw new NumberFormatException("For input string: \"" + new String(bytes(buf, start, end), StandardCharsets.UTF_8) + "\"");
+			}
+		}
+		return (int) (negative ? result : -result);
+	}
+	
+	private static byte[] bytes(MappedByteBuffer buf, int start, int end) {
+		byte[] b = new byte[end - start];
+		for(int i=start; i<end; i++) {
+			b[i - start] = buf.get(i);
 		}
+		return b;
+	}
+	
+	/**
+	 * Adds an aircraft that didn't come from a file, e.g. when building a DAO for part of a fleet
+	 * @param a the aircraft to add
+	 */
+	void add(Aircraft a) {
+		aircraft.add(a);
+		index(a);
+	}
+	
+	/**
+	 * Adds a newly loaded aircraft to each of the lookup indexes
+	 * @param a the aircraft to index
+	 */
+	private void index(Aircraft a) {
+		bySeats.computeIfAbsent(a.getSeats(), k -> new ArrayList<>()).add(a);
 		
-
+		//the first aircraft loaded with a tail code wins, as it did with the linear search
+		if(a.getTailCode() != null) {
+			byTailCode.putIfAbsent(a.getTailCode(), a);
+		}
+		if(a.getTypeCode() != null) {
+			byType.computeIfAbsent(a.getTypeCode(), k -> new ArrayList<>()).add(a);
+		}
+		if(a.getStartingPosition() != null) {
+			byStartingPosition.computeIfAbsent(a.getStartingPosition(), k -> new ArrayList<>()).add(a);
+		}
 	}
 	
 	/**
 	 * Returns a list of all the loaded Aircraft with at least the specified number of seats
+	 * The list is ordered by seat count, smallest first
 	 * @param seats the number of seats required
 	 * @return a List of all the loaded aircraft with at least this many seats
 	 */
 	@Override
 	public List<Aircraft> findAircraftBySeats(int seats) {
-		// TODO Auto-generated method stub
 		List<Aircraft> aircraftSeats = new ArrayList<Aircraft>(); 
-		for(int i=0; i<aircraft.size(); i++) {
-			if(aircraft.get(i).getSeats() >= seats) {
-				aircraftSeats.add(aircraft.get(i)); 
-				
-			}
-			
-		} 
-
+		for(List<Aircraft> sameSeats : bySeats.tailMap(seats, true).values()) {
+			aircraftSeats.addAll(sameSeats); 
+		}
 		return aircraftSeats;
 	}
+	
+	/**
+	 * Returns the smallest loaded aircraft with at least the specified number of seats
+	 * @param seats the number of seats required
+	 * @return the first loaded aircraft of the smallest seat count that fits, or null if none do
+	 */
+	public Aircraft findSmallestAircraftWithSeats(int seats) {
+		Map.Entry<Integer, List<Aircraft>> smallest = bySeats.ceilingEntry(seats);
+		if(smallest == null) {
+			return null;
+		}
+		return smallest.getValue().get(0);
+	}
 
 	/**
 	 * Returns a list of all the loaded Aircraft that start at the specified airport code
@@ -112,18 +290,11 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public List<Aircraft> findAircraftByStartingPosition(String startingPosition) {
-		// TODO Auto-generated method stub
-		List<Aircraft> aircraftSP = new ArrayList<Aircraft>();
-		
-		for(int i=0; i<aircraft.size(); i++) {
-			String givenSP = aircraft.get(i).getStartingPosition(); 
-			if(givenSP != null  && givenSP.equals(startingPosition)) {
-				aircraftSP.add(aircraft.get(i)); 
-				
-			}
-			
+		List<Aircraft> aircraftSP = byStartingPosition.get(startingPosition);
+		if(aircraftSP == null) {
+			return new ArrayList<Aircraft>();
 		}
-		return aircraftSP; 
+		return new ArrayList<Aircraft>(aircraftSP); 
 	}
 
 	/**
@@ -133,16 +304,7 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public Aircraft findAircraftByTailCode(String tailCode) {
-		for(int i=0; i<aircraft.size(); i++) {
-			 
-			if(aircraft.get(i).getTailCode().equals(tailCode) ) {
-				Aircraft theNeededCraft = aircraft.get(i); 
-				return theNeededCraft; 
-			}
-			
-		}
-		return null; 
-		
+		return byTailCode.get(tailCode); 
 	}
 
 	/**
@@ -152,17 +314,11 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public List<Aircraft> findAircraftByType(String typeCode) {
-		List<Aircraft> byTypeCode = new ArrayList<Aircraft>(); 
-		
-		for(int i=0; i<aircraft.size(); i++) {
-			String myTypeCode = aircraft.get(i).getTypeCode(); 
-			if(myTypeCode != null  && myTypeCode.equals(typeCode)) {
-				byTypeCode.add(aircraft.get(i)); 
-				
-			}
-			
+		List<Aircraft> byTypeCode = byType.get(typeCode); 
+		if(byTypeCode == null) {
+			return new ArrayList<Aircraft>();
 		}
-		return byTypeCode; 
+		return new ArrayList<Aircraft>(byTypeCode); 
 	}
 
 	/**
@@ -184,12 +340,7 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public int getNumberOfAircraft() {
-		List<Aircraft> allAircraft = new ArrayList<Aircraft>();
-		for(int i=0; i<aircraft.size();  i++) {
-			allAircraft.add(aircraft.get(i)); 
-		}
-		int numberAircraft = allAircraft.size(); 
-		return numberAircraft;
+		return aircraft.size();
 	}
 
 	/**
@@ -197,7 +348,11 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public void reset() {
-		aircraft.removeAll(aircraft); 
+		aircraft.clear(); 
+		bySeats.clear();
+		byTailCode.clear();
+		byType.clear();
+		byStartingPosition.clear();
 
 	}
 
@@ -0,0 +1,172 @@
+package solution;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.QualityScoreCalculator;
+import baseclasses.Schedule;
+
+/**
+ * The AnytimeScheduler keeps building schedules until its time budget runs out, and returns the best
+ * one it found. The first attempt allocates the rotations in order, as Scheduler does; later attempts
+ * shuffle the rotations within each day and break ties between aircraft at random.
+ * A complete schedule always beats an incomplete one. Complete schedules are compared by their
+ * QualityScoreCalculator score, lower being better, and incomplete ones by how many flights they completed.
+ * An attempt still running when the budget runs out is stopped between rotations, so the deadline is kept
+ * even if not one attempt gets to finish.
+ */
+public class AnytimeScheduler implements IScheduler {
+
+	//SchedulerRunner gives up after 2 minutes, so leave some time to spare
+	public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(110);
+
+	private final Duration budget;
+	private final int maxAttempts;
+	private final long seed;
+
+	//how the last call to generateSchedule() went
+	private int attempts;
+	private long bestScore = -1;
+
+	/**
+	 * Creates a scheduler that uses all of the default budget
+	 */
+	public AnytimeScheduler() {
+		this(DEFAULT_BUDGET, Integer.MAX_VALUE, 0);
+	}
+
+	/**
+	 * Creates a scheduler with the given budget
+	 * @param budget how long generateSchedule() may run for
+	 * @param maxAttempts the most schedules to build, even if there is time for more
+	 * @param seed the seed for shuffling the rotations on attempts after the first
+	 * @throws IllegalArgumentException if the budget isn't positive or maxAttempts is less than 1
+	 */
+	public AnytimeScheduler(Duration budget, int maxAttempts, long seed) {
+		if(budget.isNegative() || budget.isZero() || maxAttempts < 1) {
+			throw new IllegalArgumentException("The budget must be positive and at least one attempt allowed");
+		}
+		this.budget = budget;
+		this.maxAttempts = maxAttempts;
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates a schedule, providing you with ready-loaded DAO objects to get your data from
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return The best schedule found within the budget
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+		long deadline = System.nanoTime() + budget.toNanos();
+		Schedule best = null;
+		bestScore = -1;
+		attempts = 0;
+
+		//how long the slowest attempt took, so we don't start one we can't finish
+		long slowest = 0;
+		while(attempts < maxAttempts && (attempts == 0 || System.nanoTime() + slowest < deadline)) {
+			long started = System.nanoTime();
+			Random random = attempts == 0 ? null : new Random(seed + attempts);
+			Schedule candidate = construct(aircraftDAO, crewDAO, routeDAO, passengerNumbersDAO, startDate, endDate, random, deadline);
+			attempts++;
+
+			if(best != null && System.nanoTime() - deadline >= 0) {
+				//no time left to score it, so stick with what we have
+				break;
+			}
+			long score = -1;
+			if(candidate.isCompleted() && System.nanoTime() - deadline < 0) {
+				score = new QualityScoreCalculator(aircraftDAO, crewDAO, passengerNumbersDAO, candidate).calculateQualityScore();
+			}
+			if(best == null || isBetter(candidate, score, best, bestScore)) {
+				best = candidate;
+				bestScore = score;
+			}
+			slowest = Math.max(slowest, System.nanoTime() - started);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns how many schedules the last call to generateSchedule() built, including any it had to stop part way
+	 * @return the number of attempts
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * Returns the quality score of the schedule the last call to generateSchedule() returned
+	 * @return the score, or -1 if that schedule wasn't complete or there was no time left to score it
+	 */
+	public long getBestScore() {
+		return bestScore;
+	}
+
+	/**
+	 * Builds one schedule, stopping between rotations if the deadline passes
+	 * @param random used to shuffle the rotations and break ties, or null to keep them in order
+	 * @param deadline the System.nanoTime() by which to stop
+	 */
+	static Schedule construct(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate, Random random, long deadline) {
+		Schedule schedule = new Schedule(routeDAO, startDate, endDate);
+		List<List<FlightInfo>> rotations = new RotationBuilder(schedule.getRemainingAllocations()).build();
+		RotationAllocator allocator = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbersDAO, schedule);
+		if(random != null) {
+			shuffleWithinDays(rotations, random);
+			allocator.setTieBreak(random);
+		}
+		for(List<FlightInfo> rotation : rotations) {
+			if(System.nanoTime() - deadline >= 0) {
+				break;
+			}
+			allocator.allocate(rotation);
+		}
+		return schedule;
+	}
+
+	/**
+	 * Shuffles rotations that start on the same day, keeping the days themselves in order
+	 * so crew and aircraft are still handed out roughly in order of departure
+	 */
+	static void shuffleWithinDays(List<List<FlightInfo>> rotations, Random random) {
+		int from = 0;
+		while(from < rotations.size()) {
+			LocalDate day = rotations.get(from).get(0).getDepartureDateTime().toLocalDate();
+			int to = from + 1;
+			while(to < rotations.size() && rotations.get(to).get(0).getDepartureDateTime().toLocalDate().equals(day)) {
+				to++;
+			}
+			Collections.shuffle(rotations.subList(from, to), random);
+			from = to;
+		}
+	}
+
+	/**
+	 * Checks whether one schedule is better than another: complete beats incomplete, then a lower score
+	 * or more flights completed wins
+	 */
+	static boolean isBetter(Schedule candidate, long candidateScore, Schedule best, long bestScore) {
+		if(candidate.isCompleted() != best.isCompleted()) {
+			return candidate.isCompleted();
+		}
+		if(candidate.isCompleted()) {
+			return candidateScore < bestScore;
+		}
+		return candidate.getCompletedAllocations().size() > best.getCompletedAllocations().size();
+	}
+}
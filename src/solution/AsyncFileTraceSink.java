@@ -0,0 +1,241 @@
+package solution;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import baseclasses.FlightInfo;
+
+/**
+ * The AsyncFileTraceSink writes trace events to a file without holding up the scheduler. Events go into a
+ * ring buffer made up front, so tracing one allocates nothing, and a background thread takes them out and
+ * writes them. If the scheduler gets a whole buffer ahead of the writer, events are dropped and counted
+ * rather than waited for.
+ * Events must all be traced from one thread, so give each scheduling thread a sink of its own.
+ */
+public class AsyncFileTraceSink implements TraceSink, Closeable {
+
+	//how many events the buffer holds, by default
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	//how long the writer waits for more events when it has caught up
+	private static final long IDLE_NANOS = 1000000;
+
+	//the kinds of event in the buffer
+	private static final byte LEG = 0;
+	private static final byte AIRCRAFT_TRIED = 1;
+	private static final byte PROGRESS = 2;
+
+	private final Level level;
+	private final BufferedWriter out;
+	private final Thread writer;
+	private final long created = System.nanoTime();
+
+	//the ring buffer, one slot per event in each array
+	private final int mask;
+	private final byte[] kinds;
+	private final long[] times;
+	private final FlightInfo[] legs;
+	private final int[] first;
+	private final int[] second;
+
+	//how many events have been traced, and how many written; only the tracing and writing thread move each on
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private long dropped;
+	private volatile boolean closed;
+	private volatile IOException failure;
+
+	/**
+	 * Creates a sink that writes to a file, with a buffer of the default size
+	 * @param file the file to write to, which is replaced if it exists
+	 * @param level how much detail to trace
+	 * @throws IOException if the file can't be opened
+	 */
+	public AsyncFileTraceSink(Path file, Level level) throws IOException {
+		this(file, level, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a sink that writes to a file
+	 * @param file the file to write to, which is replaced if it exists
+	 * @param level how much detail to trace
+	 * @param capacity how many events the buffer holds, rounded up to a power of two
+	 * @throws IOException if the file can't be opened
+	 */
+	public AsyncFileTraceSink(Path file, Level level, int capacity) throws IOException {
+		if(capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity) {
+			size <<= 1;
+		}
+		this.level = level;
+		this.mask = size - 1;
+		this.kinds = new byte[size];
+		this.times = new long[size];
+		this.legs = new FlightInfo[size];
+		this.first = new int[size];
+		this.second = new int[size];
+		this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+
+		writer = new Thread(this::drain, "trace-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public boolean isEnabled(Level level) {
+		return level != Level.OFF && level.compareTo(this.level) <= 0;
+	}
+
+	@Override
+	public void leg(FlightInfo leg) {
+		if(isEnabled(Level.INFO)) {
+			publish(LEG, leg, 0, 0);
+		}
+	}
+
+	@Override
+	public void aircraftTried(FlightInfo leg, int position) {
+		if(isEnabled(Level.DEBUG)) {
+			publish(AIRCRAFT_TRIED, leg, position, 0);
+		}
+	}
+
+	@Override
+	public void progress(int completed, int remaining) {
+		if(isEnabled(Level.INFO)) {
+			publish(PROGRESS, null, completed, remaining);
+		}
+	}
+
+	/**
+	 * Returns how many events have been dropped because the buffer was full
+	 * @return the number of events dropped
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Writes out every event still in the buffer, then closes the file
+	 * @throws IOException if writing to the file failed, now or in the background
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		}
+		catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if(dropped > 0) {
+				out.write("DROPPED " + dropped);
+				out.newLine();
+			}
+		}
+		finally {
+			out.close();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Puts an event into the next free slot, or drops it if there isn't one
+	 */
+	private void publish(byte kind, FlightInfo leg, int a, int b) {
+		long h = head.get();
+		if(closed || h - tail.get() > mask) {
+			dropped++;
+			return;
+		}
+		int slot = (int) h & mask;
+		kinds[slot] = kind;
+		times[slot] = System.nanoTime();
+		legs[slot] = leg;
+		first[slot] = a;
+		second[slot] = b;
+		//lazySet is enough for the writer to see the slot filled in before it sees the new head
+		head.lazySet(h + 1);
+	}
+
+	/**
+	 * Runs on the writer thread, writing out events as they are traced until the sink is closed
+	 */
+	private void drain() {
+		StringBuilder line = new StringBuilder();
+		while(true) {
+			boolean finished = closed;
+			long t = tail.get();
+			long h = head.get();
+			if(t == h) {
+				if(finished) {
+					break;
+				}
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			for(; t < h; t++) {
+				int slot = (int) t & mask;
+				line.setLength(0);
+				format(line, slot);
+				legs[slot] = null;
+				if(failure == null) {
+					try {
+						out.append(line);
+						out.newLine();
+					}
+					catch(IOException ioe) {
+						//keep taking events so the scheduler isn't held up, and report it on close
+						failure = ioe;
+					}
+				}
+			}
+			tail.lazySet(h);
+		}
+		try {
+			out.flush();
+		}
+		catch(IOException ioe) {
+			if(failure == null) {
+				failure = ioe;
+			}
+		}
+	}
+
+	/**
+	 * Formats the event in a slot as one line, starting with how many microseconds after the sink was created it was traced
+	 */
+	private void format(StringBuilder line, int slot) {
+		line.append((times[slot] - created) / 1000).append(' ');
+		FlightInfo leg = legs[slot];
+		switch(kinds[slot]) {
+		case LEG:
+			line.append("LEG ").append(leg.getFlight().getFlightNumber())
+					.append(' ').append(leg.getFlight().getDepartureAirportCode()).append(' ').append(leg.getDepartureDateTime())
+					.append(' ').append(leg.getFlight().getArrivalAirportCode()).append(' ').append(leg.getLandingDateTime());
+			break;
+		case AIRCRAFT_TRIED:
+			line.append("AIRCRAFT_TRIED ").append(leg.getFlight().getFlightNumber())
+					.append(' ').append(leg.getDepartureDateTime()).append(" position=").append(first[slot]);
+			break;
+		default:
+			line.append("PROGRESS completed=").append(first[slot]).append(" remaining=").append(second[slot]);
+			break;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package solution;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import baseclasses.FlightInfo;
+
+/**
+ * An AvailabilityTimeline keeps, for each resource (an aircraft or a crew member), the flights it is
+ * busy on, ordered by departure time. A resource's flights never overlap, so the only flight that
+ * can clash with a new one is the last one departing before the new one lands. That makes
+ * "is this resource free" a single floor lookup rather than a walk over everything it's flying.
+ * Like Schedule.hasConflict(), a flight that departs exactly when another lands doesn't clash with it.
+ * @param <R> the type of resource, e.g. Aircraft or Crew. Resources are told apart by identity
+ */
+class AvailabilityTimeline<R> {
+
+	private final Map<R, TreeMap<LocalDateTime, FlightInfo>> busy = new IdentityHashMap<>();
+
+	/**
+	 * Checks whether a resource has nothing booked that overlaps the given period
+	 * @param resource the resource to check
+	 * @param start the start of the period
+	 * @param end the end of the period
+	 * @return true if the resource is free for the whole period
+	 */
+	boolean isFree(R resource, LocalDateTime start, LocalDateTime end) {
+		TreeMap<LocalDateTime, FlightInfo> flights = busy.get(resource);
+		if(flights == null) {
+			return true;
+		}
+		Map.Entry<LocalDateTime, FlightInfo> before = flights.lowerEntry(end);
+		return before == null || !before.getValue().getLandingDateTime().isAfter(start);
+	}
+
+	/**
+	 * Checks whether a resource is free for the whole of a flight
+	 * @param resource the resource to check
+	 * @param flight the flight to check against
+	 * @return true if nothing booked for the resource overlaps the flight
+	 */
+	boolean isFree(R resource, FlightInfo flight) {
+		return isFree(resource, flight.getDepartureDateTime(), flight.getLandingDateTime());
+	}
+
+	/**
+	 * Checks whether a resource is free for every one of a list of flights
+	 * @param resource the resource to check
+	 * @param flights the flights to check against
+	 * @return true if nothing booked for the resource overlaps any of the flights
+	 */
+	boolean isFree(R resource, List<FlightInfo> flights) {
+		for(FlightInfo f : flights) {
+			if(!isFree(resource, f)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds which of the given resources are free for the whole of a period
+	 * @param candidates the resources to check, e.g. all the aircraft of one type
+	 * @param start the start of the period
+	 * @param end the end of the period
+	 * @return the candidates that are free, in the order they were given
+	 */
+	List<R> findFree(Collection<? extends R> candidates, LocalDateTime start, LocalDateTime end) {
+		List<R> free = new ArrayList<>();
+		for(R r : candidates) {
+			if(isFree(r, start, end)) {
+				free.add(r);
+			}
+		}
+		return free;
+	}
+
+	/**
+	 * Marks a resource as busy for a flight
+	 * @param resource the resource to book
+	 * @param flight the flight it is booked on
+	 * @throws IllegalStateException if the resource isn't free for the flight
+	 */
+	void book(R resource, FlightInfo flight) {
+		if(!isFree(resource, flight)) {
+			throw new IllegalStateException("Resource is already busy during this flight");
+		}
+		busy.computeIfAbsent(resource, k -> new TreeMap<>()).put(flight.getDepartureDateTime(), flight);
+	}
+
+	/**
+	 * Frees a resource from a flight it was booked on
+	 * @param resource the resource to release
+	 * @param flight the flight to release it from. Nothing happens if it wasn't booked on it
+	 */
+	void release(R resource, FlightInfo flight) {
+		TreeMap<LocalDateTime, FlightInfo> flights = busy.get(resource);
+		if(flights != null && flights.get(flight.getDepartureDateTime()) == flight) {
+			flights.remove(flight.getDepartureDateTime());
+		}
+	}
+
+	/**
+	 * Returns the last flight a resource is booked on that departs before the given time
+	 * @param resource the resource to check
+	 * @param time the time to look back from
+	 * @return the flight, or null if the resource has nothing booked before then
+	 */
+	FlightInfo lastBefore(R resource, LocalDateTime time) {
+		TreeMap<LocalDateTime, FlightInfo> flights = busy.get(resource);
+		if(flights == null) {
+			return null;
+		}
+		Map.Entry<LocalDateTime, FlightInfo> before = flights.lowerEntry(time);
+		return before == null ? null : before.getValue();
+	}
+
+	/**
+	 * Returns every flight a resource is booked on
+	 * @param resource the resource to check
+	 * @return a read-only view of the flights, in departure order
+	 */
+	Collection<FlightInfo> bookings(R resource) {
+		TreeMap<LocalDateTime, FlightInfo> flights = busy.get(resource);
+		if(flights == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableCollection(flights.values());
+	}
+}
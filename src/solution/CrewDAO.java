@@ -2,15 +2,16 @@ package solution;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 import baseclasses.Aircraft;
 import baseclasses.CabinCrew;
@@ -30,6 +31,14 @@ public class CrewDAO implements ICrewDAO {
 	List<Pilot> pilots = new ArrayList<>();
 	List<CabinCrew> cabinCrew = new ArrayList<>(); 
 	
+	//Indexes built as crew are loaded, keyed by home base then type code
+	Map<String, Map<String, List<Pilot>>> pilotsByHomeBaseAndType = new HashMap<>();
+	Map<String, Map<String, List<CabinCrew>>> cabinCrewByHomeBaseAndType = new HashMap<>();
+	Map<String, List<Pilot>> pilotsByHomeBase = new HashMap<>();
+	Map<String, List<CabinCrew>> cabinCrewByHomeBase = new HashMap<>();
+	Map<String, List<Pilot>> pilotsByType = new HashMap<>();
+	Map<String, List<CabinCrew>> cabinCrewByType = new HashMap<>();
+	
 	/**
 	 * Loads the crew data from the specified file, adding them to the currently loaded crew
 	 * Multiple calls to this function, perhaps on different files, would thus be cumulative
@@ -38,84 +47,186 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public void loadCrewData(Path p) throws DataLoadingException {
-		// TODO Auto-generated method stub
-		try {
-			
-			BufferedReader br = Files.newBufferedReader((p));
-			
+		//The file is tokenised as it is read, and only one crew member's object is built at a time
+		try(BufferedReader br = Files.newBufferedReader(p)) {
+			JSONTokener tokens = new JSONTokener(br); 
+			boolean foundPilots = false; 
+			boolean foundCabinCrew = false; 
 			
-			String json = ""; 
-			String line = ""; 
-			while((line = br.readLine()) != null) {
-				json = json + line; 
+			expect(tokens, '{'); 
+			if(tokens.nextClean() != '}') {
+				tokens.back(); 
+				do {
+					String key = tokens.nextValue().toString(); 
+					expect(tokens, ':'); 
+					
+					if(key.equals("pilots")) {
+						foundPilots = true; 
+						readArray(tokens, true); 
+					}
+					else if(key.equals("cabincrew")) {
+						foundCabinCrew = true; 
+						readArray(tokens, false); 
+					}
+					else {
+						//something we don't use, so read past it
+						tokens.nextValue(); 
+					}
+				} while(tokens.nextClean() == ','); 
 			}
 			
-			//JSONarray used because root element is a '[' 
-			String arrayUtil = ""; 
-			String otherArrayUtil = ""; 
-			JSONObject root = new JSONObject(json); 
-			
-			
-			
-			//create JSON array of pilots
-			JSONArray pilotList =  root.getJSONArray("pilots"); 
-			JSONArray cabinCrewList = root.getJSONArray("cabincrew");
-			
-			for(int i=0; i<pilotList.length(); i++) {
-				Pilot myPilot = new Pilot();
-				JSONObject pilot = pilotList.getJSONObject(i);
-				if(pilot.length() != 5) {
-					throw new DataLoadingException(); 
-				}
-				
-				myPilot.setForename(pilot.getString("forename")); 
-				myPilot.setSurname(pilot.getString("surname"));
-				myPilot.setHomeBase(pilot.getString("home_airport"));
-				
-				if(pilot.getString("rank") != null){
-					myPilot.setRank(Rank.valueOf(pilot.getString("rank"))); 
-				}
-				
-				
-				
-				JSONArray typeRatings = pilot.getJSONArray("type_ratings"); 
-				
-				for(int k=0; k<typeRatings.length(); k++) {
-					myPilot.setQualifiedFor(typeRatings.get(k).toString());
-				}
-				  
-				pilots.add(myPilot);
-				
-				
-			}
-			
-			for(int i=0; i<cabinCrewList.length(); i++) {
-				
-				CabinCrew myCabinCrew = new CabinCrew();
-				JSONObject cabin = cabinCrewList.getJSONObject(i);
-				if(cabin.length() != 4) {
-					throw new DataLoadingException(); 
-				}
-				myCabinCrew.setForename(cabin.getString("forename")); 
-				myCabinCrew.setSurname(cabin.getString("surname"));
-				myCabinCrew.setHomeBase(cabin.getString("home_airport"));
-				
-				JSONArray typeRatings = cabin.getJSONArray("type_ratings"); 
-				
-				for(int k=0; k<typeRatings.length(); k++) {
-					myCabinCrew.setQualifiedFor(typeRatings.get(k).toString());
-				}
-				  
-				cabinCrew.add(myCabinCrew);
-				 
-				
+			if(!foundPilots || !foundCabinCrew) {
+				throw new DataLoadingException(new JSONException("Expected both pilots and cabincrew arrays")); 
 			}
 
-		} catch (IOException e) {
+		} catch (IOException | RuntimeException e) {
+			//JSONException and bad ranks are both runtime exceptions
 			throw new DataLoadingException(e); 
 		}
+	}
+	
+	/**
+	 * Reads the next non-whitespace character and checks it is the one expected
+	 */
+	private static void expect(JSONTokener tokens, char expected) {
+		char c = tokens.nextClean(); 
+		if(c != expected) {
+			throw tokens.syntaxError("Expected '" + expected + "' but found '" + c + "'"); 
+		}
+	}
+	
+	/**
+	 * Reads an array of crew members, adding each to the loaded crew as soon as it has been read
+	 * @param tokens the tokeniser, positioned just before the array
+	 * @param arePilots true for the pilots array, false for the cabin crew array
+	 * @throws DataLoadingException if a crew member has the wrong number of fields
+	 */
+	private void readArray(JSONTokener tokens, boolean arePilots) throws DataLoadingException {
+		expect(tokens, '['); 
+		if(tokens.nextClean() == ']') {
+			return; 
+		}
+		tokens.back(); 
+		
+		char c; 
+		do {
+			Object value = tokens.nextValue(); 
+			if(!(value instanceof JSONObject)) {
+				throw tokens.syntaxError("Expected a crew member object"); 
+			}
+			if(arePilots) {
+				add(readPilot((JSONObject) value));
+			}
+			else {
+				add(readCabinCrew((JSONObject) value));
+			}
+			c = tokens.nextClean(); 
+		} while(c == ','); 
+		
+		if(c != ']') {
+			throw tokens.syntaxError("Expected ',' or ']' but found '" + c + "'"); 
+		}
+	}
+	
+	/**
+	 * Builds a pilot from their JSON object, which must have exactly five fields
+	 */
+	private static Pilot readPilot(JSONObject pilot) throws DataLoadingException {
+		if(pilot.length() != 5) {
+			throw new DataLoadingException(); 
+		}
+		Pilot myPilot = new Pilot();
+		myPilot.setForename(pilot.getString("forename")); 
+		myPilot.setSurname(pilot.getString("surname"));
+		myPilot.setHomeBase(pilot.getString("home_airport"));
+		myPilot.setRank(Rank.valueOf(pilot.getString("rank"))); 
 		
+		JSONArray typeRatings = pilot.getJSONArray("type_ratings"); 
+		for(int k=0; k<typeRatings.length(); k++) {
+			myPilot.setQualifiedFor(typeRatings.get(k).toString());
+		}
+		return myPilot; 
+	}
+	
+	/**
+	 * Builds a cabin crew member from their JSON object, which must have exactly four fields
+	 */
+	private static CabinCrew readCabinCrew(JSONObject cabin) throws DataLoadingException {
+		if(cabin.length() != 4) {
+			throw new DataLoadingException(); 
+		}
+		CabinCrew myCabinCrew = new CabinCrew();
+		myCabinCrew.setForename(cabin.getString("forename")); 
+		myCabinCrew.setSurname(cabin.getString("surname"));
+		myCabinCrew.setHomeBase(cabin.getString("home_airport"));
 		
+		JSONArray typeRatings = cabin.getJSONArray("type_ratings"); 
+		for(int k=0; k<typeRatings.length(); k++) {
+			myCabinCrew.setQualifiedFor(typeRatings.get(k).toString());
+		}
+		return myCabinCrew; 
+	}
+	
+	/**
+	 * Adds a pilot that didn't come from a file, e.g. when building a DAO for part of the crew
+	 * @param p the pilot to add
+	 */
+	void add(Pilot p) {
+		pilots.add(p);
+		index(p, pilotsByHomeBaseAndType, pilotsByHomeBase, pilotsByType);
+	}
+	
+	/**
+	 * Adds a cabin crew member that didn't come from a file, e.g. when building a DAO for part of the crew
+	 * @param c the cabin crew member to add
+	 */
+	void add(CabinCrew c) {
+		cabinCrew.add(c);
+		index(c, cabinCrewByHomeBaseAndType, cabinCrewByHomeBase, cabinCrewByType);
+	}
+	
+	/**
+	 * Adds a newly loaded crew member to the given home base and type rating indexes
+	 * @param c the crew member to index
+	 * @param byHomeBaseAndType the index keyed by home base, then type code
+	 * @param byHomeBase the index keyed by home base
+	 * @param byType the index keyed by type code
+	 */
+	private <T extends Crew> void index(T c, Map<String, Map<String, List<T>>> byHomeBaseAndType, Map<String, List<T>> byHomeBase, Map<String, List<T>> byType) {
+		Map<String, List<T>> atBase = byHomeBaseAndType.computeIfAbsent(c.getHomeBase(), k -> new HashMap<>());
+		byHomeBase.computeIfAbsent(c.getHomeBase(), k -> new ArrayList<>()).add(c);
+		
+		for(String typeCode : c.getTypeRatings()) {
+			List<T> sameType = byType.computeIfAbsent(typeCode, k -> new ArrayList<>());
+			//a type only goes into each list once, even if it is listed twice, and c is always the last one added
+			if(!sameType.isEmpty() && sameType.get(sameType.size() - 1) == c) {
+				continue;
+			}
+			sameType.add(c);
+			atBase.computeIfAbsent(typeCode, k -> new ArrayList<>()).add(c);
+		}
+	}
+	
+	/**
+	 * Looks up a list in a home base and type code index, returning a copy so callers can't change the index
+	 */
+	private static <T> List<T> lookup(Map<String, Map<String, List<T>>> index, String airportCode, String typeCode) {
+		Map<String, List<T>> atBase = index.get(airportCode);
+		if(atBase == null || !atBase.containsKey(typeCode)) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(atBase.get(typeCode));
+	}
+	
+	/**
+	 * Looks up a list in a single-key index, returning a copy so callers can't change the index
+	 */
+	private static <T> List<T> lookup(Map<String, List<T>> index, String key) {
+		List<T> found = index.get(key);
+		if(found == null) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(found);
 	}
 	
 	/**
@@ -125,17 +236,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByHomeBase(String airportCode) {
-		// TODO Auto-generated method stub
-		List<CabinCrew> homeBase = new ArrayList<>(); 
-		
-		for(int i=0; i<cabinCrew.size(); i++) {
-			if(cabinCrew.get(i).getHomeBase().equals(airportCode)) {
-				
-				homeBase.add(cabinCrew.get(i)); 
-			}
-		}
-		
-		return homeBase; 
+		return lookup(cabinCrewByHomeBase, airportCode); 
 	}
 
 	/**
@@ -146,17 +247,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByHomeBaseAndTypeRating(String typeCode, String airportCode) {
-		// TODO Auto-generated method stub
-		List<CabinCrew> homeBaseAndType = new ArrayList<>(); 
-		
-		for(int i=0; i<cabinCrew.size(); i++) {
-			if(cabinCrew.get(i).getHomeBase().equals(airportCode) && cabinCrew.get(i).getTypeRatings().contains(typeCode)) {
-				
-				homeBaseAndType.add(cabinCrew.get(i)); 
-			}
-		}
-		
-		return homeBaseAndType;
+		return lookup(cabinCrewByHomeBaseAndType, airportCode, typeCode);
 	}
 
 	/**
@@ -166,17 +257,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByTypeRating(String typeCode) {
-		// TODO Auto-generated method stub
-		List<CabinCrew> typeRating = new ArrayList<>(); 
-		
-		for(int i=0; i<cabinCrew.size(); i++) {
-			if(cabinCrew.get(i).getTypeRatings().contains(typeCode)) {
-				
-				typeRating.add(cabinCrew.get(i)); 
-			}
-		}
-		
-		return typeRating;
+		return lookup(cabinCrewByType, typeCode);
 	}
 
 	/**
@@ -186,17 +267,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByHomeBase(String airportCode) {
-		// TODO Auto-generated method stub
-		List<Pilot> homeBase = new ArrayList<>(); 
-		
-		for(int i=0; i<pilots.size(); i++) {
-			if(pilots.get(i).getHomeBase().equals(airportCode)) {
-				
-				homeBase.add(pilots.get(i)); 
-			}
-		}
-		
-		return homeBase; 
+		return lookup(pilotsByHomeBase, airportCode); 
 	}
 
 	/**
@@ -207,17 +278,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByHomeBaseAndTypeRating(String typeCode, String airportCode) {
-		// TODO Auto-generated method stub
-		List<Pilot> homeBaseAndType = new ArrayList<>(); 
-		
-		for(int i=0; i<pilots.size(); i++) {
-			if(pilots.get(i).getHomeBase().equals(airportCode) && pilots.get(i).getTypeRatings().contains(typeCode)) {
-				
-				homeBaseAndType.add(pilots.get(i)); 
-			}
-		}
-		
-		return homeBaseAndType;
+		return lookup(pilotsByHomeBaseAndType, airportCode, typeCode);
 	}
 
 	/**
@@ -227,17 +288,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByTypeRating(String typeCode) {
-		// TODO Auto-generated method stub
-		List<Pilot> typeRating = new ArrayList<>(); 
-		
-		for(int i=0; i<pilots.size(); i++) {
-			if(pilots.get(i).getTypeRatings().contains(typeCode)) {
-				
-				typeRating.add(pilots.get(i)); 
-			}
-		}
-		
-		return typeRating; 
+		return lookup(pilotsByType, typeCode); 
 	}
 
 	/**
@@ -314,8 +365,14 @@ public class CrewDAO implements ICrewDAO {
 	@Override
 	public void reset() {
 		// TODO Auto-generated method stub
-		pilots.removeAll(pilots) ; 
-		cabinCrew.removeAll(cabinCrew); 
+		pilots.clear(); 
+		cabinCrew.clear(); 
+		pilotsByHomeBaseAndType.clear();
+		cabinCrewByHomeBaseAndType.clear();
+		pilotsByHomeBase.clear();
+		cabinCrewByHomeBase.clear();
+		pilotsByType.clear();
+		cabinCrewByType.clear();
 		
 	}
 
@@ -0,0 +1,247 @@
+package solution;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.ICrewDAO;
+import baseclasses.Pilot;
+import baseclasses.Pilot.Rank;
+
+/**
+ * The CrewPool holds the crew as ready-queues, one per home base, type rating and rank (cabin crew
+ * counting as a rank of their own). Each queue is ordered by when its crew are next free, so the
+ * crew member who has been resting longest is always at the head. A crew member is in one queue
+ * per type rating; when they are taken their entries in the other queues go stale and are skipped.
+ * The pool works best when rotations are handed out in order of departure, which is how Scheduler
+ * uses it: anyone at the head of a queue who is free before a rotation departs stays free for all of it.
+ */
+class CrewPool {
+
+	//cabin crew don't have a rank, so they get a queue key of their own
+	private static final String CABIN = "CABIN";
+
+	private static class Member {
+		final Crew crew;
+		final List<PriorityQueue<Entry>> queues = new ArrayList<>();
+		LocalDateTime freeFrom = LocalDateTime.MIN;
+		int version = 0;
+		boolean taken = false;
+
+		Member(Crew crew) {
+			this.crew = crew;
+		}
+	}
+
+	//A member's place in one queue, only current while the member's version hasn't moved on
+	private static class Entry {
+		final Member member;
+		final int version;
+		final LocalDateTime freeFrom;
+
+		Entry(Member member) {
+			this.member = member;
+			this.version = member.version;
+			this.freeFrom = member.freeFrom;
+		}
+
+		boolean isCurrent() {
+			return !member.taken && member.version == version;
+		}
+	}
+
+	private static final Comparator<Entry> NEXT_FREE_FIRST = Comparator.comparing(e -> e.freeFrom);
+
+	private final Map<Crew, Member> members = new IdentityHashMap<>();
+
+	//Queues keyed by kind|type|base, plus every queue for a kind|type and every queue for a kind
+	private final Map<String, PriorityQueue<Entry>> queues = new HashMap<>();
+	private final Map<String, List<PriorityQueue<Entry>>> queuesByType = new HashMap<>();
+	private final Map<String, List<PriorityQueue<Entry>>> queuesByKind = new HashMap<>();
+
+	/**
+	 * Builds the queues for all the crew in a DAO, with everyone free from the start
+	 * @param crewDAO the crew to put in the pool
+	 */
+	CrewPool(ICrewDAO crewDAO) {
+		for(Pilot p : crewDAO.getAllPilots()) {
+			add(p, kindOf(p.getRank()));
+		}
+		for(CabinCrew c : crewDAO.getAllCabinCrew()) {
+			add(c, CABIN);
+		}
+	}
+
+	private void add(Crew c, String kind) {
+		Member m = new Member(c);
+		members.put(c, m);
+		for(String type : c.getTypeRatings()) {
+			String typeKey = kind + "|" + type;
+			PriorityQueue<Entry> queue = queues.get(typeKey + "|" + c.getHomeBase());
+			if(queue == null) {
+				queue = new PriorityQueue<>(NEXT_FREE_FIRST);
+				queues.put(typeKey + "|" + c.getHomeBase(), queue);
+				queuesByType.computeIfAbsent(typeKey, k -> new ArrayList<>()).add(queue);
+				queuesByKind.computeIfAbsent(kind, k -> new ArrayList<>()).add(queue);
+			}
+			if(!m.queues.contains(queue)) {
+				m.queues.add(queue);
+				queue.add(new Entry(m));
+			}
+		}
+		if(m.queues.isEmpty()) {
+			//no type ratings at all, so only useful as a last resort
+			PriorityQueue<Entry> unrated = queues.computeIfAbsent(kind + "||", k -> {
+				PriorityQueue<Entry> q = new PriorityQueue<>(NEXT_FREE_FIRST);
+				queuesByKind.computeIfAbsent(kind, kk -> new ArrayList<>()).add(q);
+				return q;
+			});
+			m.queues.add(unrated);
+			unrated.add(new Entry(m));
+		}
+	}
+
+	private static String kindOf(Rank rank) {
+		return rank == null ? Rank.FIRST_OFFICER.name() : rank.name();
+	}
+
+	/**
+	 * Takes the cabin crew member who has been free longest, preferring one based at the given
+	 * airport and rated on the given type, then one rated on the type from any base, then anyone
+	 * @param base the airport the rotation departs from
+	 * @param typeCode the type of aircraft
+	 * @param departure when the rotation departs; only crew free by then are taken
+	 * @param accept a final check a candidate must pass, e.g. that they are free on every leg
+	 * @return the crew member, who is out of the pool until release() is called, or null if nobody suitable is free
+	 */
+	CabinCrew takeCabinCrew(String base, String typeCode, LocalDateTime departure, Predicate<Crew> accept) {
+		return (CabinCrew) take(CABIN, null, base, typeCode, departure, accept);
+	}
+
+	/**
+	 * Takes the pilot of the given rank who has been free longest, preferring one based at the given
+	 * airport and rated on the given type, then one rated on the type from any base. If nobody of that
+	 * rank is free, a pilot of the other rank rated on the type is taken, and failing that anyone at all
+	 * @param rank the seat to fill
+	 * @param base the airport the rotation departs from
+	 * @param typeCode the type of aircraft
+	 * @param departure when the rotation departs; only crew free by then are taken
+	 * @param accept a final check a candidate must pass, e.g. that they are free on every leg
+	 * @return the pilot, who is out of the pool until release() is called, or null if nobody suitable is free
+	 */
+	Pilot takePilot(Rank rank, String base, String typeCode, LocalDateTime departure, Predicate<Crew> accept) {
+		String otherRank = rank == Rank.CAPTAIN ? Rank.FIRST_OFFICER.name() : Rank.CAPTAIN.name();
+		return (Pilot) take(rank.name(), otherRank, base, typeCode, departure, accept);
+	}
+
+	/**
+	 * Puts a crew member taken from the pool back, free from the given time
+	 * @param c the crew member to put back
+	 * @param freeFrom when they are next free, usually when their last flight lands
+	 */
+	void release(Crew c, LocalDateTime freeFrom) {
+		Member m = members.get(c);
+		if(m == null) {
+			return;
+		}
+		m.taken = false;
+		m.version++;
+		m.freeFrom = freeFrom;
+		for(PriorityQueue<Entry> queue : m.queues) {
+			queue.add(new Entry(m));
+		}
+	}
+
+	/**
+	 * Returns when a crew member is next free, as far as the pool knows
+	 * @param c the crew member
+	 * @return the time they're free from, or null if they aren't in the pool or are taken
+	 */
+	LocalDateTime freeFrom(Crew c) {
+		Member m = members.get(c);
+		return m == null || m.taken ? null : m.freeFrom;
+	}
+
+	private Crew take(String kind, String otherKind, String base, String typeCode, LocalDateTime departure, Predicate<Crew> accept) {
+		List<Member> rejected = new ArrayList<>();
+		try {
+			Member m = takeFrom(single(queues.get(kind + "|" + typeCode + "|" + base)), departure, accept, rejected);
+			if(m == null) {
+				m = takeFrom(queuesByType.get(kind + "|" + typeCode), departure, accept, rejected);
+			}
+			if(m == null && otherKind != null) {
+				m = takeFrom(single(queues.get(otherKind + "|" + typeCode + "|" + base)), departure, accept, rejected);
+				if(m == null) {
+					m = takeFrom(queuesByType.get(otherKind + "|" + typeCode), departure, accept, rejected);
+				}
+			}
+			if(m == null) {
+				m = takeFrom(queuesByKind.get(kind), departure, accept, rejected);
+			}
+			if(m == null && otherKind != null) {
+				m = takeFrom(queuesByKind.get(otherKind), departure, accept, rejected);
+			}
+			return m == null ? null : m.crew;
+		}
+		finally {
+			//anyone turned down by accept goes back as they were
+			for(Member r : rejected) {
+				release(r.crew, r.freeFrom);
+			}
+		}
+	}
+
+	private static List<PriorityQueue<Entry>> single(PriorityQueue<Entry> queue) {
+		List<PriorityQueue<Entry>> list = new ArrayList<>(1);
+		if(queue != null) {
+			list.add(queue);
+		}
+		return list;
+	}
+
+	/**
+	 * Takes the member free earliest across the given queues, as long as they are free by the departure
+	 */
+	private Member takeFrom(List<PriorityQueue<Entry>> candidates, LocalDateTime departure, Predicate<Crew> accept, List<Member> rejected) {
+		if(candidates == null) {
+			return null;
+		}
+		while(true) {
+			PriorityQueue<Entry> best = null;
+			for(PriorityQueue<Entry> queue : candidates) {
+				Entry head = head(queue);
+				if(head != null && head.freeFrom.compareTo(departure) <= 0 && (best == null || NEXT_FREE_FIRST.compare(head, head(best)) < 0)) {
+					best = queue;
+				}
+			}
+			if(best == null) {
+				return null;
+			}
+			Member m = best.poll().member;
+			m.taken = true;
+			if(accept.test(m.crew)) {
+				return m;
+			}
+			rejected.add(m);
+		}
+	}
+
+	/**
+	 * Returns the current entry at the head of a queue, throwing away any stale ones in front of it
+	 */
+	private static Entry head(PriorityQueue<Entry> queue) {
+		Entry head = queue.peek();
+		while(head != null && !head.isCurrent()) {
+			queue.poll();
+			head = queue.peek();
+		}
+		return head;
+	}
+}
@@ -0,0 +1,312 @@
+package solution;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+
+/**
+ * The DataLoader loads the aircraft, crew, route and passenger number data at the same time,
+ * one thread per DAO, since none of the DAOs depend on each other.
+ * Loading takes as long as the slowest file rather than all four added together.
+ */
+public class DataLoader {
+
+	public static final String AIRCRAFT = "aircraft";
+	public static final String CREW = "crew";
+	public static final String ROUTES = "routes";
+	public static final String PASSENGER_NUMBERS = "passenger numbers";
+
+	private final IAircraftDAO aircraftDAO;
+	private final ICrewDAO crewDAO;
+	private final IRouteDAO routeDAO;
+	private final IPassengerNumbersDAO passengerNumbersDAO;
+
+	//How long each DAO took to load on the last call to load(), in the order they finished
+	private final Map<String, Duration> loadTimings = new LinkedHashMap<>();
+
+	//Why the snapshot couldn't be written on the last call to load(), or null if it was written or didn't need to be
+	private IOException snapshotWriteFailure;
+
+	/**
+	 * Creates a loader that will fill the given DAOs
+	 * @param aircraftDAO the DAO to load aircraft into
+	 * @param crewDAO the DAO to load crew into
+	 * @param routeDAO the DAO to load routes into
+	 * @param passengerNumbersDAO the DAO to load passenger numbers into
+	 */
+	public DataLoader(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO) {
+		this.aircraftDAO = aircraftDAO;
+		this.crewDAO = crewDAO;
+		this.routeDAO = routeDAO;
+		this.passengerNumbersDAO = passengerNumbersDAO;
+	}
+
+	/**
+	 * Loads each file into its DAO concurrently, returning once they have all loaded
+	 * If any of them fails, the others are cancelled and the failure is thrown as soon as they have stopped
+	 * @param aircraftFile the aircraft CSV file
+	 * @param crewFile the crew JSON file
+	 * @param routeFile the route XML file
+	 * @param passengerNumbersFile the passenger numbers SQLite database
+	 * @throws DataLoadingException if any of the files fails to load. Its cause is the first failure,
+	 * and any other failures seen before the rest were cancelled are added as suppressed exceptions
+	 */
+	public void load(Path aircraftFile, Path crewFile, Path routeFile, Path passengerNumbersFile) throws DataLoadingException {
+		run(() -> aircraftDAO.loadAircraftData(aircraftFile),
+				() -> crewDAO.loadCrewData(crewFile),
+				() -> routeDAO.loadRouteData(routeFile),
+				() -> passengerNumbersDAO.loadPassengerNumbersData(passengerNumbersFile));
+	}
+
+	/**
+	 * Loads each file into its DAO concurrently as load() does, but from a snapshot wherever the snapshot
+	 * was written from the same file. Each file is hashed, and only a DAO whose file has changed since the
+	 * snapshot was written, or that isn't in the snapshot, is loaded by parsing its file. The snapshot is
+	 * then written again so the next load can use it.
+	 * Only AircraftDAO, CrewDAO, RouteDAO and PassengerNumbersDAO can be snapshotted, and only while they
+	 * are empty, since a snapshot of one file can't say what else a DAO held. Any other DAO is loaded from its file
+	 * @param aircraftFile the aircraft CSV file
+	 * @param crewFile the crew JSON file
+	 * @param routeFile the route XML file
+	 * @param passengerNumbersFile the passenger numbers SQLite database
+	 * @param snapshotFile the snapshot to load from, which needn't exist yet, and to write afterwards
+	 * @throws DataLoadingException if any of the files fails to load, as load() does. A snapshot that is
+	 * corrupt or can't be written is never a failure: the files are parsed instead, and the snapshot left as it was.
+	 * Why it couldn't be written is kept for getSnapshotWriteFailure()
+	 */
+	public void load(Path aircraftFile, Path crewFile, Path routeFile, Path passengerNumbersFile, Path snapshotFile) throws DataLoadingException {
+		snapshotWriteFailure = null;
+		DataSnapshot snapshot;
+		try {
+			snapshot = DataSnapshot.open(snapshotFile);
+		}
+		catch(IOException ioe) {
+			//start again from the files, and write a good one afterwards
+			snapshot = null;
+		}
+		DataSnapshot from = snapshot;
+
+		//the hash of each file loaded into a DAO that can be snapshotted
+		byte[][] hashes = new byte[DataSnapshot.Section.values().length][];
+		AtomicBoolean parsed = new AtomicBoolean();
+
+		AircraftDAO aircraft = aircraftDAO instanceof AircraftDAO && aircraftDAO.getNumberOfAircraft() == 0 ? (AircraftDAO) aircraftDAO : null;
+		CrewDAO crew = crewDAO instanceof CrewDAO && crewDAO.getNumberOfPilots() + crewDAO.getNumberOfCabinCrew() == 0 ? (CrewDAO) crewDAO : null;
+		RouteDAO routes = routeDAO instanceof RouteDAO && routeDAO.getNumberOfRoutes() == 0 ? (RouteDAO) routeDAO : null;
+		PassengerNumbersDAO passengers = passengerNumbersDAO instanceof PassengerNumbersDAO && passengerNumbersDAO.getNumberOfEntries() == 0 ? (PassengerNumbersDAO) passengerNumbersDAO : null;
+
+		run(snapshotted(aircraft, aircraftFile, DataSnapshot.Section.AIRCRAFT, hashes, parsed,
+						hash -> from != null && from.restoreAircraft(hash, aircraft),
+						() -> aircraftDAO.loadAircraftData(aircraftFile)),
+				snapshotted(crew, crewFile, DataSnapshot.Section.CREW, hashes, parsed,
+						hash -> from != null && from.restoreCrew(hash, crew),
+						() -> crewDAO.loadCrewData(crewFile)),
+				snapshotted(routes, routeFile, DataSnapshot.Section.ROUTES, hashes, parsed,
+						hash -> from != null && from.restoreRoutes(hash, routes),
+						() -> routeDAO.loadRouteData(routeFile)),
+				snapshotted(passengers, passengerNumbersFile, DataSnapshot.Section.PASSENGER_NUMBERS, hashes, parsed,
+						hash -> from != null && from.restorePassengerNumbers(hash, passengers),
+						() -> passengerNumbersDAO.loadPassengerNumbersData(passengerNumbersFile)));
+
+		if(parsed.get()) {
+			DataSnapshot.Writer writer = new DataSnapshot.Writer();
+			if(hashes[DataSnapshot.Section.AIRCRAFT.ordinal()] != null) {
+				writer.aircraft(hashes[DataSnapshot.Section.AIRCRAFT.ordinal()], aircraft);
+			}
+			if(hashes[DataSnapshot.Section.CREW.ordinal()] != null) {
+				writer.crew(hashes[DataSnapshot.Section.CREW.ordinal()], crew);
+			}
+			if(hashes[DataSnapshot.Section.ROUTES.ordinal()] != null) {
+				writer.routes(hashes[DataSnapshot.Section.ROUTES.ordinal()], routes);
+			}
+			if(hashes[DataSnapshot.Section.PASSENGER_NUMBERS.ordinal()] != null) {
+				writer.passengerNumbers(hashes[DataSnapshot.Section.PASSENGER_NUMBERS.ordinal()], passengers);
+			}
+			try {
+				writer.write(snapshotFile);
+			}
+			catch(IOException ioe) {
+				//the snapshot only saves time, so without it the next load parses the files again
+				snapshotWriteFailure = ioe;
+			}
+		}
+	}
+
+	/**
+	 * Runs the four loads concurrently, returning once they have all finished
+	 */
+	private void run(Load aircraftLoad, Load crewLoad, Load routeLoad, Load passengerNumbersLoad) throws DataLoadingException {
+		loadTimings.clear();
+		ExecutorService executor = Executors.newFixedThreadPool(4, r -> {
+			Thread t = new Thread(r, "DataLoader");
+			t.setDaemon(true);
+			return t;
+		});
+		CompletionService<Timing> loads = new ExecutorCompletionService<>(executor);
+		List<Future<Timing>> futures = new ArrayList<>();
+
+		try {
+			futures.add(loads.submit(timed(AIRCRAFT, aircraftLoad)));
+			futures.add(loads.submit(timed(CREW, crewLoad)));
+			futures.add(loads.submit(timed(ROUTES, routeLoad)));
+			futures.add(loads.submit(timed(PASSENGER_NUMBERS, passengerNumbersLoad)));
+
+			DataLoadingException failure = null;
+			for(int i=0; i<futures.size(); i++) {
+				Future<Timing> done = loads.take();
+				try {
+					Timing t = done.get();
+					loadTimings.put(t.name, t.duration);
+				}
+				catch(ExecutionException e) {
+					if(failure == null) {
+						failure = new DataLoadingException(e.getCause());
+						//fail fast, there's no point waiting for the others
+						for(Future<Timing> f : futures) {
+							f.cancel(true);
+						}
+					}
+					else {
+						failure.addSuppressed(e.getCause());
+					}
+				}
+				catch(CancellationException e) {
+					//one we cancelled ourselves after an earlier failure
+				}
+			}
+			if(failure != null) {
+				throw failure;
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataLoadingException(e);
+		}
+		finally {
+			executor.shutdownNow();
+			awaitTermination(executor);
+		}
+	}
+
+	/**
+	 * Waits for every load to stop, so none of them is still writing to its DAO once load() returns.
+	 * A cancelled load that doesn't check for interrupts runs on to the end, so this may wait for it
+	 * If the calling thread is interrupted it keeps waiting, and the interrupt is set again afterwards
+	 */
+	private static void awaitTermination(ExecutorService executor) {
+		boolean interrupted = false;
+		while(true) {
+			try {
+				if(executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+					break;
+				}
+			}
+			catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns how long each DAO took to load on the last call to load(), keyed by AIRCRAFT, CREW, ROUTES
+	 * or PASSENGER_NUMBERS in the order they finished. DAOs that failed or were cancelled are left out
+	 * @return a read-only map of DAO name to load time
+	 */
+	public Map<String, Duration> getLoadTimings() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(loadTimings));
+	}
+
+	/**
+	 * Returns why the snapshot couldn't be written on the last call to load() with a snapshot file. Until it
+	 * can be, every load parses the files whose sections are out of date
+	 * @return the failure, or null if the snapshot was written or was already up to date
+	 */
+	public IOException getSnapshotWriteFailure() {
+		return snapshotWriteFailure;
+	}
+
+	/**
+	 * One of the DAO load calls, which all throw DataLoadingException and return nothing
+	 */
+	private interface Load {
+		void run() throws DataLoadingException;
+	}
+
+	/**
+	 * Restores a DAO's data from a snapshot, returning false if the snapshot doesn't have it
+	 */
+	private interface Restore {
+		boolean run(byte[] sourceHash) throws IOException;
+	}
+
+	/**
+	 * Makes a load that restores a DAO from the snapshot if it can, and otherwise parses its file,
+	 * recording the file's hash for the next snapshot and whether it had to be parsed
+	 * @param dao the DAO, or null if it can't be snapshotted, in which case its file is always parsed
+	 */
+	private static Load snapshotted(Object dao, Path file, DataSnapshot.Section section, byte[][] hashes, AtomicBoolean parsed, Restore restore, Load parse) {
+		if(dao == null) {
+			return parse;
+		}
+		return () -> {
+			byte[] hash = null;
+			try {
+				hash = DataSnapshot.hash(file);
+				if(restore.run(hash)) {
+					hashes[section.ordinal()] = hash;
+					return;
+				}
+			}
+			catch(IOException ioe) {
+				//the file can't be read, which parsing it will report properly, or the section is corrupt
+			}
+			parse.run();
+			if(hash != null) {
+				hashes[section.ordinal()] = hash;
+				parsed.set(true);
+			}
+		};
+	}
+
+	private static class Timing {
+		final String name;
+		final Duration duration;
+
+		Timing(String name, Duration duration) {
+			this.name = name;
+			this.duration = duration;
+		}
+	}
+
+	private static Callable<Timing> timed(String name, Load load) {
+		return () -> {
+			long start = System.nanoTime();
+			load.run();
+			return new Timing(name, Duration.ofNanos(System.nanoTime() - start));
+		};
+	}
+
+}
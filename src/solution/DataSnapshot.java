@@ -0,0 +1,598 @@
+package solution;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.Pilot;
+import baseclasses.Pilot.Rank;
+import baseclasses.Route;
+
+/**
+ * A DataSnapshot is a binary copy of what the DAOs loaded, which can be read back far faster than the
+ * CSV, JSON, XML and SQLite files can be parsed. Each DAO's data is kept in a section of its own, along
+ * with a SHA-256 hash of the file it was loaded from, so a section is only used while its file is unchanged.
+ *
+ * The file starts with a magic number and a version, followed by every string used, each stored once,
+ * and then the sections. Within a section the fields are stored a column at a time, strings as their
+ * place in the string list and everything else as fixed width numbers. Numbers are big-endian, and the
+ * file ends with a CRC-32 of everything before it, so a snapshot that has been damaged is never used.
+ */
+class DataSnapshot {
+
+	//"JSNP", then the version, which changes whenever the layout does
+	static final int MAGIC = 0x4A534E50;
+	static final int VERSION = 1;
+
+	//the length of a SHA-256 hash
+	static final int HASH_LENGTH = 32;
+
+	//stored in place of a string, time or duration that is null
+	private static final int NULL_STRING = -1;
+	private static final long NULL_NANOS = Long.MIN_VALUE;
+
+	/**
+	 * The sections of a snapshot, one per DAO
+	 */
+	enum Section {
+		AIRCRAFT, CREW, ROUTES, PASSENGER_NUMBERS
+	}
+
+	private final String[] strings;
+	private final Map<Section, byte[]> hashes = new EnumMap<>(Section.class);
+	private final Map<Section, ByteBuffer> bodies = new EnumMap<>(Section.class);
+
+	private DataSnapshot(ByteBuffer buf) {
+		strings = new String[buf.getInt()];
+		for(int i=0; i<strings.length; i++) {
+			byte[] bytes = new byte[buf.getInt()];
+			buf.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		int sections = buf.getInt();
+		for(int i=0; i<sections; i++) {
+			Section section = Section.values()[buf.get()];
+			byte[] hash = new byte[HASH_LENGTH];
+			buf.get(hash);
+			int length = buf.getInt();
+			ByteBuffer body = buf.slice();
+			body.limit(length);
+			buf.position(buf.position() + length);
+			hashes.put(section, hash);
+			bodies.put(section, body);
+		}
+	}
+
+	/**
+	 * Reads a snapshot file into memory and reads its string list and where its sections are.
+	 * The file is read rather than mapped, so it is closed again by the time the snapshot is written over it,
+	 * which some platforms won't allow while a file is mapped
+	 * @param file the snapshot file
+	 * @return the snapshot, or null if there is no such file or it was written in another version of the format
+	 * @throws IOException if the file can't be read, or is cut short or otherwise corrupt
+	 */
+	static DataSnapshot open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large to read: " + file);
+			}
+			ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+			while(buf.hasRemaining()) {
+				if(channel.read(buf) < 0) {
+					throw new IOException("Snapshot cut short while reading: " + file);
+				}
+			}
+			buf.flip();
+			if(buf.remaining() < 12 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+				return null;
+			}
+			//check the whole file before trusting any of the lengths in it
+			int end = buf.limit() - Integer.BYTES;
+			ByteBuffer content = buf.duplicate();
+			content.position(0).limit(end);
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			if((int) crc.getValue() != buf.getInt(end)) {
+				throw new IOException("Snapshot checksum doesn't match: " + file);
+			}
+			buf.limit(end);
+			return new DataSnapshot(buf);
+		}
+		catch(NoSuchFileException nsfe) {
+			return null;
+		}
+		catch(RuntimeException e) {
+			//read past the end, or a length or index that can't be right
+			throw new IOException("Corrupt snapshot: " + file, e);
+		}
+	}
+
+	/**
+	 * Hashes a source file, to compare with the hash it had when a snapshot was written
+	 * @param file the file to hash
+	 * @return its SHA-256 hash
+	 * @throws IOException if the file can't be read
+	 */
+	static byte[] hash(Path file) throws IOException {
+		MessageDigest digest = sha256();
+		byte[] buffer = new byte[64 * 1024];
+		try(InputStream in = Files.newInputStream(file)) {
+			int read;
+			while((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException nsae) {
+			//every Java platform has to provide SHA-256
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	/**
+	 * Gets a section's body, if the snapshot has one written from a file with the given hash
+	 */
+	private ByteBuffer body(Section section, byte[] sourceHash) {
+		if(!Arrays.equals(hashes.get(section), sourceHash)) {
+			return null;
+		}
+		//a copy, so reading it doesn't move the position of the one kept
+		return bodies.get(section).duplicate();
+	}
+
+	/**
+	 * Adds the aircraft in the snapshot to a DAO, if they were loaded from a file with the given hash
+	 * @param sourceHash the hash of the aircraft file as it is now
+	 * @param dao the DAO to add them to
+	 * @return true if they were added, false if the snapshot has no aircraft from that file
+	 * @throws IOException if the section is corrupt, in which case nothing is added
+	 */
+	boolean restoreAircraft(byte[] sourceHash, AircraftDAO dao) throws IOException {
+		ByteBuffer buf = body(Section.AIRCRAFT, sourceHash);
+		if(buf == null) {
+			return false;
+		}
+		try {
+			int n = buf.getInt();
+			Aircraft[] aircraft = new Aircraft[n];
+			for(int i=0; i<n; i++) {
+				aircraft[i] = new Aircraft();
+			}
+			for(Aircraft a : aircraft) {
+				a.setTailCode(string(buf));
+			}
+			for(Aircraft a : aircraft) {
+				a.setModel(string(buf));
+			}
+			for(Aircraft a : aircraft) {
+				a.setTypeCode(string(buf));
+			}
+			for(Aircraft a : aircraft) {
+				byte m = buf.get();
+				a.setManufacturer(m < 0 ? null : AircraftDAO.MANUFACTURERS[m]);
+			}
+			for(Aircraft a : aircraft) {
+				a.setStartingPosition(string(buf));
+			}
+			for(Aircraft a : aircraft) {
+				a.setSeats(buf.getInt());
+			}
+			for(Aircraft a : aircraft) {
+				a.setCabinCrewRequired(buf.getInt());
+			}
+			//only add them once the whole section has been read
+			for(Aircraft a : aircraft) {
+				dao.add(a);
+			}
+			return true;
+		}
+		catch(RuntimeException e) {
+			throw new IOException("Corrupt aircraft section", e);
+		}
+	}
+
+	/**
+	 * Adds the pilots and cabin crew in the snapshot to a DAO, if they were loaded from a file with the given hash
+	 * @param sourceHash the hash of the crew file as it is now
+	 * @param dao the DAO to add them to
+	 * @return true if they were added, false if the snapshot has no crew from that file
+	 * @throws IOException if the section is corrupt, in which case nothing is added
+	 */
+	boolean restoreCrew(byte[] sourceHash, CrewDAO dao) throws IOException {
+		ByteBuffer buf = body(Section.CREW, sourceHash);
+		if(buf == null) {
+			return false;
+		}
+		try {
+			Pilot[] pilots = new Pilot[buf.getInt()];
+			for(int i=0; i<pilots.length; i++) {
+				pilots[i] = new Pilot();
+			}
+			readCrew(buf, pilots);
+			for(Pilot p : pilots) {
+				byte rank = buf.get();
+				p.setRank(rank < 0 ? null : Rank.values()[rank]);
+			}
+
+			CabinCrew[] cabinCrew = new CabinCrew[buf.getInt()];
+			for(int i=0; i<cabinCrew.length; i++) {
+				cabinCrew[i] = new CabinCrew();
+			}
+			readCrew(buf, cabinCrew);
+
+			for(Pilot p : pilots) {
+				dao.add(p);
+			}
+			for(CabinCrew c : cabinCrew) {
+				dao.add(c);
+			}
+			return true;
+		}
+		catch(RuntimeException e) {
+			throw new IOException("Corrupt crew section", e);
+		}
+	}
+
+	/**
+	 * Reads the columns pilots and cabin crew have in common: names, home base and type ratings
+	 */
+	private void readCrew(ByteBuffer buf, Crew[] crew) {
+		for(Crew c : crew) {
+			c.setForename(string(buf));
+		}
+		for(Crew c : crew) {
+			c.setSurname(string(buf));
+		}
+		for(Crew c : crew) {
+			c.setHomeBase(string(buf));
+		}
+		int[] ratings = new int[crew.length];
+		for(int i=0; i<crew.length; i++) {
+			ratings[i] = buf.getInt();
+		}
+		for(int i=0; i<crew.length; i++) {
+			for(int k=0; k<ratings[i]; k++) {
+				crew[i].setQualifiedFor(string(buf));
+			}
+		}
+	}
+
+	/**
+	 * Adds the routes in the snapshot to a DAO, if they were loaded from a file with the given hash
+	 * @param sourceHash the hash of the route file as it is now
+	 * @param dao the DAO to add them to
+	 * @return true if they were added, false if the snapshot has no routes from that file
+	 * @throws IOException if the section is corrupt, in which case nothing is added
+	 */
+	boolean restoreRoutes(byte[] sourceHash, RouteDAO dao) throws IOException {
+		ByteBuffer buf = body(Section.ROUTES, sourceHash);
+		if(buf == null) {
+			return false;
+		}
+		try {
+			int n = buf.getInt();
+			Route[] routes = new Route[n];
+			for(int i=0; i<n; i++) {
+				routes[i] = new Route();
+			}
+			for(Route r : routes) {
+				r.setFlightNumber(buf.getInt());
+			}
+			for(Route r : routes) {
+				r.setDayOfWeek(string(buf));
+			}
+			for(Route r : routes) {
+				long nanos = buf.getLong();
+				r.setDepartureTime(nanos == NULL_NANOS ? null : LocalTime.ofNanoOfDay(nanos));
+			}
+			for(Route r : routes) {
+				r.setDepartureAirport(string(buf));
+			}
+			for(Route r : routes) {
+				r.setDepartureAirportCode(string(buf));
+			}
+			for(Route r : routes) {
+				long nanos = buf.getLong();
+				r.setArrivalTime(nanos == NULL_NANOS ? null : LocalTime.ofNanoOfDay(nanos));
+			}
+			for(Route r : routes) {
+				r.setArrivalAirport(string(buf));
+			}
+			for(Route r : routes) {
+				r.setArrivalAirportCode(string(buf));
+			}
+			for(Route r : routes) {
+				long nanos = buf.getLong();
+				r.setDuration(nanos == NULL_NANOS ? null : Duration.ofNanos(nanos));
+			}
+			dao.addAll(Arrays.asList(routes));
+			return true;
+		}
+		catch(RuntimeException e) {
+			throw new IOException("Corrupt route section", e);
+		}
+	}
+
+	/**
+	 * Adds the passenger numbers in the snapshot to a DAO, if they were loaded from a database with the given hash
+	 * @param sourceHash the hash of the passenger numbers database as it is now
+	 * @param dao the DAO to add them to
+	 * @return true if they were added, false if the snapshot has no passenger numbers from that database
+	 * @throws IOException if the section is corrupt, in which case nothing is added
+	 */
+	boolean restorePassengerNumbers(byte[] sourceHash, PassengerNumbersDAO dao) throws IOException {
+		ByteBuffer buf = body(Section.PASSENGER_NUMBERS, sourceHash);
+		if(buf == null) {
+			return false;
+		}
+		try {
+			int n = buf.getInt();
+			long[] keys = new long[n];
+			buf.asLongBuffer().get(keys);
+			buf.position(buf.position() + n * Long.BYTES);
+			int[] values = new int[n];
+			buf.asIntBuffer().get(values);
+			for(int i=0; i<n; i++) {
+				dao.loadEstimates.put(keys[i], values[i]);
+			}
+			return true;
+		}
+		catch(RuntimeException e) {
+			throw new IOException("Corrupt passenger numbers section", e);
+		}
+	}
+
+	private String string(ByteBuffer buf) {
+		int id = buf.getInt();
+		return id == NULL_STRING ? null : strings[id];
+	}
+
+	/**
+	 * Builds a snapshot a section at a time, then writes it out in one go
+	 */
+	static class Writer {
+		private final List<String> strings = new ArrayList<>();
+		private final Map<String, Integer> stringIds = new HashMap<>();
+		private final Map<Section, byte[]> hashes = new EnumMap<>(Section.class);
+		private final Map<Section, byte[]> bodies = new EnumMap<>(Section.class);
+
+		/**
+		 * Adds the aircraft in a DAO
+		 * @param sourceHash the hash of the file they were loaded from
+		 * @param dao the DAO holding them
+		 */
+		void aircraft(byte[] sourceHash, AircraftDAO dao) {
+			List<Aircraft> aircraft = dao.aircraft;
+			section(Section.AIRCRAFT, sourceHash, out -> {
+				out.writeInt(aircraft.size());
+				for(Aircraft a : aircraft) {
+					out.writeInt(id(a.getTailCode()));
+				}
+				for(Aircraft a : aircraft) {
+					out.writeInt(id(a.getModel()));
+				}
+				for(Aircraft a : aircraft) {
+					out.writeInt(id(a.getTypeCode()));
+				}
+				for(Aircraft a : aircraft) {
+					out.writeByte(a.getManufacturer() == null ? -1 : a.getManufacturer().ordinal());
+				}
+				for(Aircraft a : aircraft) {
+					out.writeInt(id(a.getStartingPosition()));
+				}
+				for(Aircraft a : aircraft) {
+					out.writeInt(a.getSeats());
+				}
+				for(Aircraft a : aircraft) {
+					out.writeInt(a.getCabinCrewRequired());
+				}
+			});
+		}
+
+		/**
+		 * Adds the pilots and cabin crew in a DAO
+		 * @param sourceHash the hash of the file they were loaded from
+		 * @param dao the DAO holding them
+		 */
+		void crew(byte[] sourceHash, CrewDAO dao) {
+			section(Section.CREW, sourceHash, out -> {
+				out.writeInt(dao.pilots.size());
+				writeCrew(out, dao.pilots);
+				for(Pilot p : dao.pilots) {
+					out.writeByte(p.getRank() == null ? -1 : p.getRank().ordinal());
+				}
+				out.writeInt(dao.cabinCrew.size());
+				writeCrew(out, dao.cabinCrew);
+			});
+		}
+
+		private void writeCrew(DataOutputStream out, List<? extends Crew> crew) throws IOException {
+			for(Crew c : crew) {
+				out.writeInt(id(c.getForename()));
+			}
+			for(Crew c : crew) {
+				out.writeInt(id(c.getSurname()));
+			}
+			for(Crew c : crew) {
+				out.writeInt(id(c.getHomeBase()));
+			}
+			for(Crew c : crew) {
+				out.writeInt(c.getTypeRatings().size());
+			}
+			for(Crew c : crew) {
+				for(String typeCode : c.getTypeRatings()) {
+					out.writeInt(id(typeCode));
+				}
+			}
+		}
+
+		/**
+		 * Adds the routes in a DAO
+		 * @param sourceHash the hash of the file they were loaded from
+		 * @param dao the DAO holding them
+		 */
+		void routes(byte[] sourceHash, RouteDAO dao) {
+			List<Route> routes = dao.routes;
+			section(Section.ROUTES, sourceHash, out -> {
+				out.writeInt(routes.size());
+				for(Route r : routes) {
+					out.writeInt(r.getFlightNumber());
+				}
+				for(Route r : routes) {
+					out.writeInt(id(r.getDayOfWeek()));
+				}
+				for(Route r : routes) {
+					out.writeLong(r.getDepartureTime() == null ? NULL_NANOS : r.getDepartureTime().toNanoOfDay());
+				}
+				for(Route r : routes) {
+					out.writeInt(id(r.getDepartureAirport()));
+				}
+				for(Route r : routes) {
+					out.writeInt(id(r.getDepartureAirportCode()));
+				}
+				for(Route r : routes) {
+					out.writeLong(r.getArrivalTime() == null ? NULL_NANOS : r.getArrivalTime().toNanoOfDay());
+				}
+				for(Route r : routes) {
+					out.writeInt(id(r.getArrivalAirport()));
+				}
+				for(Route r : routes) {
+					out.writeInt(id(r.getArrivalAirportCode()));
+				}
+				for(Route r : routes) {
+					out.writeLong(r.getDuration() == null ? NULL_NANOS : r.getDuration().toNanos());
+				}
+			});
+		}
+
+		/**
+		 * Adds the passenger numbers in a DAO
+		 * @param sourceHash the hash of the database they were loaded from
+		 * @param dao the DAO holding them
+		 */
+		void passengerNumbers(byte[] sourceHash, PassengerNumbersDAO dao) {
+			int n = dao.loadEstimates.size();
+			long[] keys = new long[n];
+			int[] values = new int[n];
+			int[] next = new int[1];
+			dao.loadEstimates.forEach((key, value) -> {
+				keys[next[0]] = key;
+				values[next[0]] = value;
+				next[0]++;
+			});
+			section(Section.PASSENGER_NUMBERS, sourceHash, out -> {
+				out.writeInt(n);
+				for(long key : keys) {
+					out.writeLong(key);
+				}
+				for(int value : values) {
+					out.writeInt(value);
+				}
+			});
+		}
+
+		/**
+		 * Writes the snapshot to a file, via a temporary file next to it so a reader never sees half of it
+		 * @param file the file to write, which is replaced if it exists
+		 * @throws IOException if it can't be written
+		 */
+		void write(Path file) throws IOException {
+			Path dir = file.toAbsolutePath().getParent();
+			Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+			try {
+				CRC32 crc = new CRC32();
+				try(OutputStream os = Files.newOutputStream(temp);
+						DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(os), crc))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(strings.size());
+					for(String s : strings) {
+						byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+						out.writeInt(bytes.length);
+						out.write(bytes);
+					}
+					out.writeInt(bodies.size());
+					for(Map.Entry<Section, byte[]> e : bodies.entrySet()) {
+						out.writeByte(e.getKey().ordinal());
+						out.write(hashes.get(e.getKey()));
+						out.writeInt(e.getValue().length);
+						out.write(e.getValue());
+					}
+					//the checksum of everything written so far, which writing it doesn't change
+					out.writeInt((int) crc.getValue());
+				}
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+		/**
+		 * Encodes a section's body in memory, replacing any body already added for that section
+		 */
+		private void section(Section section, byte[] sourceHash, Body body) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try(DataOutputStream out = new DataOutputStream(bytes)) {
+				body.write(out);
+			}
+			catch(IOException ioe) {
+				//writing to memory can't fail
+				throw new IllegalStateException(ioe);
+			}
+			hashes.put(section, sourceHash);
+			bodies.put(section, bytes.toByteArray());
+		}
+
+		/**
+		 * Returns a string's place in the string list, adding it if it isn't there yet
+		 */
+		private int id(String s) {
+			if(s == null) {
+				return NULL_STRING;
+			}
+			Integer id = stringIds.get(s);
+			if(id == null) {
+				id = strings.size();
+				strings.add(s);
+				stringIds.put(s, id);
+			}
+			return id;
+		}
+
+		private interface Body {
+			void write(DataOutputStream out) throws IOException;
+		}
+	}
+}
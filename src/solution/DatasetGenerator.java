@@ -0,0 +1,498 @@
+package solution;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The DatasetGenerator writes synthetic aircraft, crew, route and passenger number files in the same formats
+ * as the ones in data/, at any multiple of their size, so the loaders and schedulers can be measured as they scale.
+ * The data has the same shape as the real thing: routes come in outbound and inbound pairs with consecutive flight
+ * numbers, crew are rated on the aircraft types flown from their base, and bases are busier or quieter much as they are now.
+ * The real bases and destinations are used first; a larger scale adds made-up ones, growing with the square root of
+ * the scale so each base gets busier as well as there being more of them.
+ * The same scale and seed always give the same files, and each file is written a record at a time as it is generated.
+ */
+public class DatasetGenerator {
+
+	//the size of the bundled full data set, which a scale of 1 matches
+	static final int AIRCRAFT = 48;
+	static final int PILOTS = 350;
+	static final int CABIN_CREW = 800;
+	static final int FLIGHT_NUMBER_PAIRS = 295;
+
+	//passenger numbers are written for every day a route flies in this range, as in the bundled database
+	static final LocalDate FIRST_DAY = LocalDate.of(2020, 7, 1);
+	static final LocalDate LAST_DAY = LocalDate.of(2021, 8, 31);
+
+	//how many rows go to the database in each batch
+	private static final int BATCH_SIZE = 10000;
+
+	/**
+	 * An aircraft type in the fleet, and how common it is
+	 */
+	private static class FleetType {
+		final String model;
+		final String typeCode;
+		final String manufacturer;
+		final int seats;
+		final int cabinCrewRequired;
+		final int weight;
+
+		FleetType(String model, String typeCode, String manufacturer, int seats, int cabinCrewRequired, int weight) {
+			this.model = model;
+			this.typeCode = typeCode;
+			this.manufacturer = manufacturer;
+			this.seats = seats;
+			this.cabinCrewRequired = cabinCrewRequired;
+			this.weight = weight;
+		}
+	}
+
+	private static final FleetType[] FLEET = {
+		new FleetType("A321", "A321", "Airbus", 220, 5, 24),
+		new FleetType("A320", "A320", "Airbus", 180, 4, 12),
+		new FleetType("757", "B757", "Boeing", 280, 6, 5),
+		new FleetType("A330", "A330", "Airbus", 322, 8, 4),
+		new FleetType("767", "B767", "Boeing", 326, 8, 3)
+	};
+
+	//the real bases, weighted by how many aircraft start at each
+	private static final String[][] BASES = {
+		{"LGW", "Gatwick", "13"}, {"MAN", "Manchester", "9"}, {"BHX", "Birmingham", "7"}, {"STN", "Stansted", "5"},
+		{"BFS", "Belfast", "4"}, {"EMA", "Nottingham", "3"}, {"NCL", "Newcastle", "3"}, {"CWL", "Cardiff", "2"}, {"GLA", "Glasgow", "2"}
+	};
+
+	private static final String[][] DESTINATIONS = {
+		{"TFS", "Tenerife-Sur"}, {"ACE", "Lanzarote"}, {"REU", "Reus"}, {"NBE", "Enfidha"}, {"DLM", "Dalaman"}, {"AYT", "Antalya"},
+		{"LCA", "Larnaca"}, {"LPA", "Gran Canaria"}, {"FUE", "Fuerteventura"}, {"LEI", "Almeria"}, {"IBZ", "Ibiza"},
+		{"PMI", "Palma de Mallorca"}, {"MAH", "Menorca"}, {"MLA", "Malta"}, {"NAP", "Naples"}, {"SPU", "Split"}, {"CFU", "Kerkyra"},
+		{"PVK", "Preveza/Lefkada"}, {"EFL", "Kefallinia"}, {"ZTH", "Zakynthos Island"}, {"KLX", "Kalamata"}, {"HER", "Irakleion"},
+		{"JTR", "Thira"}, {"JSI", "Skiathos"}, {"KVA", "Kavala"}, {"MJT", "Mytilini"}, {"KGS", "Kos"}, {"RHO", "Rhodes"},
+		{"BOJ", "Burgas"}, {"ADB", "Izmir"}, {"BJV", "Bodrum"}, {"PFO", "Paphos"}, {"FAO", "Faro"}, {"GRO", "Girona"},
+		{"RAK", "Marrakech"}, {"ALC", "Alicante"}, {"DBV", "Dubrovnik"}
+	};
+
+	//made-up bases are given the average weight of the real ones
+	private static final int MADE_UP_BASE_WEIGHT = 5;
+
+	private static final String[] FORENAMES = {
+		"Alex", "Sam", "Jordan", "Morgan", "Taylor", "Casey", "Jamie", "Robin", "Charlie", "Frankie",
+		"Ashley", "Drew", "Elliot", "Harper", "Kai", "Logan", "Nico", "Quinn", "Riley", "Sasha"
+	};
+
+	private static final String[] SURNAMES = {
+		"Smith", "Jones", "Taylor", "Brown", "Williams", "Wilson", "Johnson", "Davies", "Patel", "Robinson",
+		"Wright", "Thompson", "Evans", "Walker", "White", "Roberts", "Green", "Hall", "Wood", "Jackson"
+	};
+
+	private final double scale;
+	private final long seed;
+
+	//the airports, bases first, with their codes and names, and how busy each base is as a running total
+	private final List<String> codes = new ArrayList<>();
+	private final List<String> names = new ArrayList<>();
+	private final int bases;
+	private final int[] baseWeights;
+
+	//the fleet: each aircraft's type and base, and how many of each type each base has
+	private final int[] aircraftType;
+	private final int[] aircraftBase;
+	private final int[][] fleetAtBase;
+
+	//the routes, one entry per leg per day it flies
+	private int routes;
+	private final int[] routeFlightNumber;
+	private final int[] routeDay;
+	private final int[] routeFrom;
+	private final int[] routeTo;
+	private final int[] routeDeparture;
+	private final int[] routeMinutes;
+	private final int[] routeDemand;
+
+	/**
+	 * Plans a data set of the given size. Nothing is written until one of the write methods is called
+	 * @param scale how many times the size of the bundled full data set to make it, e.g. 10 for ten times as many aircraft, crew and routes
+	 * @param seed the seed everything is drawn from
+	 * @throws IllegalArgumentException if the scale isn't positive, or is too big to give every airport its own code
+	 */
+	public DatasetGenerator(double scale, long seed) {
+		if(!(scale > 0)) {
+			throw new IllegalArgumentException("The scale must be positive");
+		}
+		this.scale = scale;
+		this.seed = seed;
+
+		bases = Math.max(1, (int) Math.round(BASES.length * Math.sqrt(scale)));
+		int destinations = Math.max(1, (int) Math.round(DESTINATIONS.length * Math.sqrt(scale)));
+		airports(bases, destinations);
+		//running totals of the weights, so a base can be picked by binary search however many there are
+		baseWeights = new int[bases];
+		for(int b = 0; b < bases; b++) {
+			baseWeights[b] = (b == 0 ? 0 : baseWeights[b - 1]) + (b < BASES.length ? Integer.parseInt(BASES[b][2]) : MADE_UP_BASE_WEIGHT);
+		}
+
+		Random random = new Random(seed);
+		int[] typeWeights = new int[FLEET.length];
+		for(int t = 0; t < FLEET.length; t++) {
+			typeWeights[t] = FLEET[t].weight;
+		}
+		int fleetSize = scaled(AIRCRAFT);
+		aircraftType = new int[fleetSize];
+		aircraftBase = new int[fleetSize];
+		fleetAtBase = new int[bases][FLEET.length];
+		for(int a = 0; a < fleetSize; a++) {
+			//every base gets an aircraft before any gets a second
+			aircraftBase[a] = a < bases ? a : pickBase(random);
+			aircraftType[a] = pick(random, typeWeights);
+			fleetAtBase[aircraftBase[a]][aircraftType[a]]++;
+		}
+
+		int pairs = scaled(FLIGHT_NUMBER_PAIRS);
+		routeFlightNumber = new int[pairs * 4];
+		routeDay = new int[pairs * 4];
+		routeFrom = new int[pairs * 4];
+		routeTo = new int[pairs * 4];
+		routeDeparture = new int[pairs * 4];
+		routeMinutes = new int[pairs * 4];
+		routeDemand = new int[pairs * 4];
+		for(int p = 0; p < pairs; p++) {
+			int base = pickBase(random);
+			int destination = bases + random.nextInt(destinations);
+			int outbound = 100 + 2 * p;
+			int minutes = 90 + 5 * random.nextInt(43);
+			int departure = 6 * 60 + 5 * random.nextInt(15 * 12);
+			int turnaround = 55 + 5 * random.nextInt(8);
+			int inboundMinutes = Math.max(60, minutes + 5 * (random.nextInt(7) - 3));
+			int demand = 120 + random.nextInt(180);
+
+			//most flight numbers fly one day a week, some two, with Saturdays busiest
+			int firstDay = random.nextInt(8);
+			if(firstDay == 7) {
+				firstDay = DayOfWeek.SATURDAY.getValue() - 1;
+			}
+			int days = random.nextInt(10) < 3 ? 2 : 1;
+			for(int d = 0; d < days; d++) {
+				int day = (firstDay + d * (1 + random.nextInt(6))) % 7;
+				int inbound = departure + minutes + turnaround;
+				addRoute(outbound, day, base, destination, departure, minutes, demand);
+				addRoute(outbound + 1, (day + inbound / (24 * 60)) % 7, destination, base, inbound % (24 * 60), inboundMinutes, demand);
+			}
+		}
+	}
+
+	private void addRoute(int flightNumber, int day, int from, int to, int departure, int minutes, int demand) {
+		routeFlightNumber[routes] = flightNumber;
+		routeDay[routes] = day;
+		routeFrom[routes] = from;
+		routeTo[routes] = to;
+		routeDeparture[routes] = departure;
+		routeMinutes[routes] = minutes;
+		routeDemand[routes] = demand;
+		routes++;
+	}
+
+	/**
+	 * Writes a data set, e.g. DatasetGenerator build/data10 10 42
+	 * @param args the directory to write to, the scale, and optionally the seed
+	 * @throws IOException if a file can't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2 || args.length > 3) {
+			System.err.println("Usage: DatasetGenerator <output directory> <scale> [seed]");
+			return;
+		}
+		long seed = args.length == 3 ? Long.parseLong(args[2]) : 0;
+		new DatasetGenerator(Double.parseDouble(args[1]), seed).write(Paths.get(args[0]));
+	}
+
+	/**
+	 * Writes all four files into a directory, named as in data/: aircraft.csv, crew.json, routes.xml and passengernumbers.db
+	 * @param directory the directory to write to, which is created if need be. Files already there are replaced
+	 * @throws IOException if a file can't be written
+	 */
+	public void write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		writeAircraft(directory.resolve("aircraft.csv"));
+		writeCrew(directory.resolve("crew.json"));
+		writeRoutes(directory.resolve("routes.xml"));
+		writePassengerNumbers(directory.resolve("passengernumbers.db"));
+	}
+
+	/**
+	 * Writes the fleet as a CSV file that AircraftDAO can load
+	 * @param p where to write it
+	 * @throws IOException if it can't be written
+	 */
+	public void writeAircraft(Path p) throws IOException {
+		try(Writer out = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+			out.write("Tailcode,Model,TypeCode,Manufacturer,StartingPosition,Seats,CabinCrewRequired\n");
+			for(int a = 0; a < aircraftType.length; a++) {
+				FleetType type = FLEET[aircraftType[a]];
+				out.write("G-" + letters(a, 4) + "," + type.model + "," + type.typeCode + "," + type.manufacturer + ","
+						+ codes.get(aircraftBase[a]) + "," + type.seats + "," + type.cabinCrewRequired + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Writes the pilots and cabin crew as a JSON file that CrewDAO can load. Crew are rated on one type, or
+	 * sometimes two, chosen from the aircraft at their base
+	 * @param p where to write it
+	 * @throws IOException if it can't be written
+	 */
+	public void writeCrew(Path p) throws IOException {
+		Random random = new Random(seed ^ 0x5DEECE66DL);
+		try(Writer out = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+			out.write("{\n  \"pilots\": [");
+			int pilots = scaled(PILOTS);
+			for(int i = 0; i < pilots; i++) {
+				int base = pickBase(random);
+				//a few more first officers than captains, as in the bundled crew
+				String rank = random.nextInt(100) < 47 ? "CAPTAIN" : "FIRST_OFFICER";
+				out.write(i == 0 ? "\n" : ",\n");
+				out.write("    {\"forename\": \"" + FORENAMES[random.nextInt(FORENAMES.length)] + "\", \"surname\": \""
+						+ SURNAMES[random.nextInt(SURNAMES.length)] + "\", \"home_airport\": \"" + codes.get(base)
+						+ "\", \"rank\": \"" + rank + "\", \"type_ratings\": " + typeRatings(random, base) + "}");
+			}
+			out.write("\n  ],\n  \"cabincrew\": [");
+			int cabinCrew = scaled(CABIN_CREW);
+			for(int i = 0; i < cabinCrew; i++) {
+				int base = pickBase(random);
+				out.write(i == 0 ? "\n" : ",\n");
+				out.write("    {\"forename\": \"" + FORENAMES[random.nextInt(FORENAMES.length)] + "\", \"surname\": \""
+						+ SURNAMES[random.nextInt(SURNAMES.length)] + "\", \"home_airport\": \"" + codes.get(base)
+						+ "\", \"type_ratings\": " + typeRatings(random, base) + "}");
+			}
+			out.write("\n  ]\n}\n");
+		}
+	}
+
+	/**
+	 * Writes the routes as an XML file that RouteDAO can load
+	 * @param p where to write it
+	 * @throws IOException if it can't be written
+	 */
+	public void writeRoutes(Path p) throws IOException {
+		try(BufferedWriter out = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<Routes>\n");
+			for(int r = 0; r < routes; r++) {
+				int arrival = (routeDeparture[r] + routeMinutes[r]) % (24 * 60);
+				out.write("    <Route>\n");
+				field(out, "FlightNumber", Integer.toString(routeFlightNumber[r]));
+				field(out, "DayOfWeek", DayOfWeek.of(routeDay[r] + 1).getDisplayName(TextStyle.SHORT, Locale.ENGLISH));
+				field(out, "DepartureTime", time(routeDeparture[r]));
+				field(out, "DepartureAirport", names.get(routeFrom[r]));
+				field(out, "DepartureAirportIATACode", codes.get(routeFrom[r]));
+				field(out, "ArrivalTime", time(arrival));
+				field(out, "ArrivalAirport", names.get(routeTo[r]));
+				field(out, "ArrivalAirportIATACode", codes.get(routeTo[r]));
+				field(out, "Duration", Duration.ofMinutes(routeMinutes[r]).toString());
+				out.write("    </Route>\n");
+			}
+			out.write("</Routes>\n");
+		}
+	}
+
+	/**
+	 * Writes a load estimate for every flight on every day it flies between FIRST_DAY and LAST_DAY, as an
+	 * SQLite database that PassengerNumbersDAO can load. Loads are highest in the summer
+	 * @param p where to write it. Any database already there is replaced
+	 * @throws IOException if it can't be written. The exception's "cause" indicates the underlying exception
+	 */
+	public void writePassengerNumbers(Path p) throws IOException {
+		Files.deleteIfExists(p);
+		Random random = new Random(seed ^ 0x2545F4914F6CDD1DL);
+
+		//the legs flying on each day of the week
+		List<List<Integer>> byDay = new ArrayList<>();
+		for(int d = 0; d < 7; d++) {
+			byDay.add(new ArrayList<>());
+		}
+		for(int r = 0; r < routes; r++) {
+			byDay.get(routeDay[r]).add(r);
+		}
+
+		try(Connection c = DriverManager.getConnection("jdbc:sqlite:" + p.toString())) {
+			try(Statement s = c.createStatement()) {
+				s.execute("PRAGMA journal_mode = OFF");
+				s.execute("PRAGMA synchronous = OFF");
+				s.execute("CREATE TABLE \"PassengerNumbers\" (\"Date\" TEXT, \"FlightNumber\" INTEGER, \"LoadEstimate\" INTEGER, PRIMARY KEY(\"FlightNumber\",\"Date\"))");
+			}
+			c.setAutoCommit(false);
+			try(PreparedStatement insert = c.prepareStatement("INSERT OR REPLACE INTO PassengerNumbers (Date, FlightNumber, LoadEstimate) VALUES (?, ?, ?)")) {
+				int batched = 0;
+				for(LocalDate date = FIRST_DAY; !date.isAfter(LAST_DAY); date = date.plusDays(1)) {
+					//peaks in mid July, lowest in mid January
+					double season = 1 + 0.25 * Math.cos(2 * Math.PI * (date.getDayOfYear() - 196) / 365.0);
+					String day = date.toString();
+					for(int r : byDay.get(date.getDayOfWeek().getValue() - 1)) {
+						double noise = 0.85 + 0.3 * random.nextDouble();
+						insert.setString(1, day);
+						insert.setInt(2, routeFlightNumber[r]);
+						insert.setInt(3, (int) Math.round(routeDemand[r] * season * noise));
+						insert.addBatch();
+						if(++batched == BATCH_SIZE) {
+							insert.executeBatch();
+							batched = 0;
+						}
+					}
+				}
+				insert.executeBatch();
+			}
+			c.commit();
+		}
+		catch(SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Sets up the airport codes and names, bases first, using the real ones before making any up
+	 */
+	private void airports(int bases, int destinations) {
+		Set<String> real = new HashSet<>();
+		for(String[] b : BASES) {
+			real.add(b[0]);
+		}
+		for(String[] d : DESTINATIONS) {
+			real.add(d[0]);
+		}
+		int madeUp = 0;
+		for(int b = 0; b < bases; b++) {
+			if(b < BASES.length) {
+				codes.add(BASES[b][0]);
+				names.add(BASES[b][1]);
+			}
+			else {
+				madeUp = addMadeUp(real, madeUp);
+			}
+		}
+		for(int d = 0; d < destinations; d++) {
+			if(d < DESTINATIONS.length) {
+				codes.add(DESTINATIONS[d][0]);
+				names.add(DESTINATIONS[d][1]);
+			}
+			else {
+				madeUp = addMadeUp(real, madeUp);
+			}
+		}
+	}
+
+	/**
+	 * Adds the next made-up airport, skipping any code a real airport has
+	 * @return where to carry on making up codes from
+	 */
+	private int addMadeUp(Set<String> real, int next) {
+		String code;
+		do {
+			if(next >= 26 * 26 * 26) {
+				throw new IllegalArgumentException("Too many airports for three letter codes; use a smaller scale");
+			}
+			code = letters(next++, 3);
+		} while(real.contains(code));
+		codes.add(code);
+		names.add("Airport " + code);
+		return next;
+	}
+
+	/**
+	 * Picks one or, sometimes, two type ratings from the aircraft at a base, or the whole fleet if it has none
+	 * @return the ratings as a JSON array
+	 */
+	private String typeRatings(Random random, int base) {
+		int[] weights = fleetAtBase[base];
+		int total = 0;
+		for(int w : weights) {
+			total += w;
+		}
+		if(total == 0) {
+			weights = new int[FLEET.length];
+			for(int t = 0; t < FLEET.length; t++) {
+				weights[t] = FLEET[t].weight;
+			}
+		}
+		int first = pick(random, weights);
+		String ratings = "[\"" + FLEET[first].typeCode + "\"";
+		if(random.nextInt(100) < 17) {
+			int second = random.nextInt(FLEET.length);
+			if(second != first) {
+				ratings += ", \"" + FLEET[second].typeCode + "\"";
+			}
+		}
+		return ratings + "]";
+	}
+
+	private int scaled(int count) {
+		return Math.max(1, (int) Math.round(count * scale));
+	}
+
+	/**
+	 * Picks a base at random, each in proportion to its weight
+	 */
+	private int pickBase(Random random) {
+		int r = random.nextInt(baseWeights[baseWeights.length - 1]);
+		int found = Arrays.binarySearch(baseWeights, r + 1);
+		return found >= 0 ? found : -found - 1;
+	}
+
+	/**
+	 * Picks an index at random, each in proportion to its weight
+	 */
+	private static int pick(Random random, int[] weights) {
+		int total = 0;
+		for(int w : weights) {
+			total += w;
+		}
+		int r = random.nextInt(total);
+		for(int i = 0; i < weights.length; i++) {
+			r -= weights[i];
+			if(r < 0) {
+				return i;
+			}
+		}
+		return weights.length - 1;
+	}
+
+	/**
+	 * Spells out a number in capital letters, A being 0, padded with As to at least the given length
+	 */
+	private static String letters(int n, int length) {
+		StringBuilder s = new StringBuilder();
+		do {
+			s.insert(0, (char) ('A' + n % 26));
+			n /= 26;
+		} while(n > 0);
+		while(s.length() < length) {
+			s.insert(0, 'A');
+		}
+		return s.toString();
+	}
+
+	private static String time(int minuteOfDay) {
+		return String.format("%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+	}
+
+	private static void field(Writer out, String name, String value) throws IOException {
+		out.write("        <" + name + ">" + value + "</" + name + ">\n");
+	}
+}
@@ -0,0 +1,195 @@
+package solution;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import baseclasses.Aircraft;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.Schedule;
+
+/**
+ * The LargeNeighbourhoodScheduler builds a schedule the same way as Scheduler, then spends the rest of its
+ * time budget improving it. Each move picks a neighbourhood of rotations, either everything leaving one base
+ * on one day or everything one aircraft flies over a few days, unallocates it and allocates it again in a
+ * different order, searching for crew who are free rather than taking them from the pool.
+ * The move is kept only if the schedule completes more flights, or as many with a lower QualityScoreCalculator
+ * score, worked out move by move with a QualityEvaluator; otherwise the rotations get their old aircraft and crew back.
+ */
+public class LargeNeighbourhoodScheduler implements IScheduler {
+
+	//SchedulerRunner gives up after 2 minutes, so leave some time to spare
+	public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(110);
+
+	//how many days either side of a rotation an aircraft neighbourhood reaches
+	static final int AIRCRAFT_NEIGHBOURHOOD_DAYS = 2;
+
+	private final Duration budget;
+	private final long seed;
+
+	//how the last call to generateSchedule() went
+	private int moves;
+	private int acceptedMoves;
+
+	/**
+	 * Creates a scheduler that uses all of the default budget
+	 */
+	public LargeNeighbourhoodScheduler() {
+		this(DEFAULT_BUDGET, 0);
+	}
+
+	/**
+	 * Creates a scheduler with the given budget
+	 * @param budget how long generateSchedule() may run for
+	 * @param seed the seed for choosing neighbourhoods
+	 * @throws IllegalArgumentException if the budget isn't positive
+	 */
+	public LargeNeighbourhoodScheduler(Duration budget, long seed) {
+		if(budget.isNegative() || budget.isZero()) {
+			throw new IllegalArgumentException("The budget must be positive");
+		}
+		this.budget = budget;
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates a schedule, providing you with ready-loaded DAO objects to get your data from
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return The improved schedule, once the budget has run out
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+		long deadline = System.nanoTime() + budget.toNanos();
+		moves = 0;
+		acceptedMoves = 0;
+
+		Schedule schedule = new Schedule(routeDAO, startDate, endDate);
+		List<List<FlightInfo>> rotations = new RotationBuilder(schedule.getRemainingAllocations()).build();
+		RotationAllocator allocator = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbersDAO, schedule);
+		for(List<FlightInfo> rotation : rotations) {
+			if(System.nanoTime() - deadline >= 0) {
+				return schedule;
+			}
+			allocator.allocate(rotation);
+		}
+
+		//scores each move by what it changed, rather than scoring the whole schedule again
+		QualityEvaluator evaluator = new QualityEvaluator(aircraftDAO, crewDAO, passengerNumbersDAO, schedule);
+		allocator.setEvaluator(evaluator);
+		Random random = new Random(seed);
+		allocator.setTieBreak(random);
+		allocator.setFillGaps(true);
+		long currentScore = evaluator.getScore();
+		int currentRemaining = schedule.getRemainingAllocations().size();
+
+		//how long the slowest move took, so we don't start one we can't finish
+		long slowest = 0;
+		while(!rotations.isEmpty() && System.nanoTime() + slowest - deadline < 0) {
+			long started = System.nanoTime();
+			List<List<FlightInfo>> neighbourhood = neighbourhood(rotations, schedule, random);
+			moves++;
+
+			List<RotationAllocator.Assignment> before = new ArrayList<>();
+			boolean restorable = true;
+			for(List<FlightInfo> rotation : neighbourhood) {
+				RotationAllocator.Assignment a = new RotationAllocator.Assignment(schedule, rotation.get(0));
+				restorable &= a.isComplete();
+				before.add(a);
+				allocator.unAllocate(rotation);
+			}
+
+			List<List<FlightInfo>> order = new ArrayList<>(neighbourhood);
+			Collections.shuffle(order, random);
+			for(List<FlightInfo> rotation : order) {
+				allocator.allocate(rotation);
+			}
+
+			long score = evaluator.getScore();
+			int remaining = schedule.getRemainingAllocations().size();
+			if(remaining < currentRemaining || (remaining == currentRemaining && score < currentScore)) {
+				currentScore = score;
+				currentRemaining = remaining;
+				acceptedMoves++;
+			}
+			else {
+				//put it back the way it was
+				for(List<FlightInfo> rotation : neighbourhood) {
+					allocator.unAllocate(rotation);
+				}
+				for(int i = 0; i < before.size(); i++) {
+					allocator.allocate(neighbourhood.get(i), before.get(i));
+				}
+				if(!restorable) {
+					//some of it was never fully crewed, so it may not have gone back exactly
+					currentScore = evaluator.getScore();
+					currentRemaining = schedule.getRemainingAllocations().size();
+				}
+			}
+			slowest = Math.max(slowest, System.nanoTime() - started);
+		}
+		return schedule;
+	}
+
+	/**
+	 * Returns how many moves the last call to generateSchedule() tried
+	 * @return the number of moves
+	 */
+	public int getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Returns how many moves the last call to generateSchedule() kept
+	 * @return the number of moves that improved the schedule
+	 */
+	public int getAcceptedMoves() {
+		return acceptedMoves;
+	}
+
+	/**
+	 * Picks a neighbourhood around a random rotation: either every rotation leaving the same base on the
+	 * same day, or every rotation flown by the same aircraft within a few days of it
+	 * @return the rotations in the neighbourhood, in order of departure
+	 */
+	static List<List<FlightInfo>> neighbourhood(List<List<FlightInfo>> rotations, Schedule schedule, Random random) {
+		List<FlightInfo> chosen = rotations.get(random.nextInt(rotations.size()));
+		FlightInfo first = chosen.get(0);
+		Aircraft plane = schedule.getAircraftFor(first);
+		List<List<FlightInfo>> neighbourhood = new ArrayList<>();
+
+		if(plane == null || random.nextBoolean()) {
+			String base = first.getFlight().getDepartureAirportCode();
+			LocalDate day = first.getDepartureDateTime().toLocalDate();
+			for(List<FlightInfo> rotation : rotations) {
+				FlightInfo f = rotation.get(0);
+				if(f.getDepartureDateTime().toLocalDate().equals(day) && f.getFlight().getDepartureAirportCode().equals(base)) {
+					neighbourhood.add(rotation);
+				}
+			}
+		}
+		else {
+			LocalDateTime from = first.getDepartureDateTime().minusDays(AIRCRAFT_NEIGHBOURHOOD_DAYS);
+			LocalDateTime to = first.getDepartureDateTime().plusDays(AIRCRAFT_NEIGHBOURHOOD_DAYS);
+			for(List<FlightInfo> rotation : rotations) {
+				FlightInfo f = rotation.get(0);
+				if(schedule.getAircraftFor(f) == plane && !f.getDepartureDateTime().isBefore(from) && !f.getDepartureDateTime().isAfter(to)) {
+					neighbourhood.add(rotation);
+				}
+			}
+		}
+		return neighbourhood;
+	}
+}
@@ -0,0 +1,142 @@
+package solution;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys to primitive int values, using open addressing
+ * with linear probing so that nothing is boxed on a put or a get
+ */
+class LongIntHashMap {
+
+	//the table never gets more than half full, which keeps probe sequences short
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size = 0;
+	private final int missingValue;
+
+	/**
+	 * Creates an empty map
+	 * @param missingValue the value get() returns for keys that aren't in the map
+	 */
+	LongIntHashMap(int missingValue) {
+		this.missingValue = missingValue;
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Returns the value stored for a key
+	 * @param key the key to look up
+	 * @return the value stored for the key, or the missing value given to the constructor
+	 */
+	int get(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while(used[slot]) {
+			if(keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return missingValue;
+	}
+
+	/**
+	 * Stores a value for a key, replacing any value already stored for it
+	 * @param key the key to store under
+	 * @param value the value to store
+	 */
+	void put(long key, int value) {
+		if((size + 1) * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while(used[slot]) {
+			if(keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 * @return the number of keys in the map
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Passes every key and its value to a visitor, in no particular order
+	 * @param visitor the visitor to pass them to
+	 */
+	void forEach(Visitor visitor) {
+		for(int i=0; i<keys.length; i++) {
+			if(used[i]) {
+				visitor.visit(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Something to be passed every key and value in the map, without boxing them
+	 */
+	interface Visitor {
+		void visit(long key, int value);
+	}
+
+	/**
+	 * Removes every key from the map, shrinking it back to its starting size
+	 */
+	void clear() {
+		if(keys.length == MIN_CAPACITY) {
+			Arrays.fill(used, false);
+		}
+		else {
+			allocate(MIN_CAPACITY);
+		}
+		size = 0;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for(int i=0; i<oldKeys.length; i++) {
+			if(oldUsed[i]) {
+				int slot = hash(oldKeys[i]) & mask;
+				while(used[slot]) {
+					slot = (slot + 1) & mask;
+				}
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	//spreads the bits of the key so that keys differing only in their high half don't collide
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -3,6 +3,7 @@
 import org.sqlite.*; 
 import java.sql.*; 
 
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 
@@ -76,7 +77,31 @@ public class Main {
 		passengers.getPassengerNumbersFor(618, LocalDate.parse("2020-08-26")); 
 		*/ 
 		
-		schedule.generateSchedule(aircraft, crew, routes, passengers, LocalDate.parse("2020-07-01"), LocalDate.parse("2020-07-08")); 
+		//Loads all four data files at once, from a snapshot of them if they haven't changed since the last run
+		DataLoader loader = new DataLoader(aircraft, crew, routes, passengers);
+		try {
+			loader.load(Paths.get("./data/aircraft.csv"), Paths.get("./data/crew.json"), Paths.get("./data/routes.xml"), Paths.get("./data/passengernumbers.db"), Paths.get("./data/data.snapshot"));
+			System.out.println("Data loaded in " + loader.getLoadTimings());
+			if(loader.getSnapshotWriteFailure() != null) {
+				System.err.println("Couldn't write the data snapshot, so the next run will parse the files again: " + loader.getSnapshotWriteFailure());
+			}
+		}
+		catch (DataLoadingException dle) {
+			System.err.println("Error loading data");
+			dle.printStackTrace();
+			//there is nothing to schedule with
+			return;
+		}
+		
+		//Traces each rotation to a file in the background, rather than printing it as it goes
+		try (AsyncFileTraceSink trace = new AsyncFileTraceSink(Paths.get("./trace.log"), TraceSink.Level.INFO)) {
+			schedule = new Scheduler(null, trace);
+			schedule.generateSchedule(aircraft, crew, routes, passengers, LocalDate.parse("2020-07-01"), LocalDate.parse("2020-07-08")); 
+		}
+		catch (IOException ioe) {
+			System.err.println("Error writing trace");
+			ioe.printStackTrace();
+		}
 		
 	}
 	
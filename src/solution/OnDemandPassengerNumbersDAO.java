@@ -0,0 +1,199 @@
+package solution;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import baseclasses.DataLoadingException;
+import baseclasses.IPassengerNumbersDAO;
+
+/**
+ * The OnDemandPassengerNumbersDAO answers passenger number queries straight from the SQLite
+ * database instead of loading every forecast into memory up front, like PassengerNumbersDAO does.
+ * Each database stays open with a prepared statement on (FlightNumber, Date), and recent answers
+ * are kept in a size-bounded least-recently-used cache.
+ * Lookups rely on the (FlightNumber, Date) primary key of the PassengerNumbers table to be fast.
+ */
+public class OnDemandPassengerNumbersDAO implements IPassengerNumbersDAO, AutoCloseable {
+
+	public static final int DEFAULT_CACHE_SIZE = 65536;
+
+	//One open connection and lookup statement per loaded database, in load order
+	List<Connection> connections = new ArrayList<>();
+	List<PreparedStatement> lookups = new ArrayList<>();
+
+	//Answers keyed the same way as PassengerNumbersDAO, evicting the least recently used once full
+	final int cacheSize;
+	final Map<Long, Integer> cache;
+	long cacheHits = 0;
+	long cacheMisses = 0;
+
+	/**
+	 * Creates a DAO with the default cache size
+	 */
+	public OnDemandPassengerNumbersDAO() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a DAO that caches up to the given number of answers
+	 * @param cacheSize the most answers to keep in the cache
+	 */
+	public OnDemandPassengerNumbersDAO(int cacheSize) {
+		if(cacheSize < 1) {
+			throw new IllegalArgumentException("cacheSize must be at least 1");
+		}
+		this.cacheSize = cacheSize;
+		this.cache = new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+				return size() > OnDemandPassengerNumbersDAO.this.cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of passenger number entries in the loaded databases
+	 * If a flight and date appears in more than one database, it is counted once for each
+	 * @return the number of passenger number entries in the loaded databases
+	 */
+	@Override
+	public int getNumberOfEntries() {
+		int entries = 0;
+		for(Connection c : connections) {
+			try(Statement s = c.createStatement();
+					ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM PassengerNumbers")) {
+				if(rs.next()) {
+					entries += rs.getInt(1);
+				}
+			}
+			catch(SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns the predicted number of passengers for a given flight on a given date, or -1 if no data available
+	 * The most recently loaded database with an entry for the flight and date wins
+	 * @param flightNumber The flight number of the flight to check for
+	 * @param date the date of the flight to check for
+	 * @return the predicted number of passengers, or -1 if no data available
+	 */
+	@Override
+	public int getPassengerNumbersFor(int flightNumber, LocalDate date) {
+		long key = PassengerNumbersDAO.key(flightNumber, date);
+		Integer cached = cache.get(key);
+		if(cached != null) {
+			cacheHits++;
+			return cached;
+		}
+		cacheMisses++;
+
+		int loadEstimate = -1;
+		try {
+			for(int i=lookups.size()-1; i>=0 && loadEstimate == -1; i--) {
+				PreparedStatement lookup = lookups.get(i);
+				lookup.setInt(1, flightNumber);
+				lookup.setString(2, date.toString());
+				try(ResultSet rs = lookup.executeQuery()) {
+					if(rs.next()) {
+						loadEstimate = rs.getInt(1);
+					}
+				}
+			}
+		}
+		catch(SQLException e) {
+			throw new IllegalStateException(e);
+		}
+		cache.put(key, loadEstimate);
+		return loadEstimate;
+	}
+
+	/**
+	 * Opens the specified SQLite database so that future calls to getPassengerNumbersFor() can query it
+	 * Multiple calls to this method are additive, but flight numbers/dates in earlier databases will be overridden
+	 * The databases can be closed by calling reset()
+	 * @param p The path of the SQLite database to load data from
+	 * @throws DataLoadingException If there is a problem opening the database
+	 */
+	@Override
+	public void loadPassengerNumbersData(Path p) throws DataLoadingException {
+		Connection c = null;
+		try {
+			c = DriverManager.getConnection("jdbc:sqlite:" + p.toString());
+			PreparedStatement lookup = c.prepareStatement("SELECT LoadEstimate FROM PassengerNumbers WHERE FlightNumber = ? AND Date = ?");
+			connections.add(c);
+			lookups.add(lookup);
+		}
+		catch(SQLException e) {
+			closeQuietly(c);
+			throw new DataLoadingException(e);
+		}
+		//answers from the earlier databases may now be overridden
+		cache.clear();
+	}
+
+	/**
+	 * Closes all the open databases and empties the cache, ready to start again if needed
+	 */
+	@Override
+	public void reset() {
+		for(Connection c : connections) {
+			closeQuietly(c);
+		}
+		connections.clear();
+		lookups.clear();
+		cache.clear();
+		cacheHits = 0;
+		cacheMisses = 0;
+	}
+
+	/**
+	 * Closes all the open databases, the same as reset()
+	 */
+	@Override
+	public void close() {
+		reset();
+	}
+
+	/**
+	 * Returns the number of getPassengerNumbersFor() calls answered from the cache
+	 * @return the number of cache hits since the last reset
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Returns the number of getPassengerNumbersFor() calls that had to query the database
+	 * @return the number of cache misses since the last reset
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	private static void closeQuietly(Connection c) {
+		if(c == null) {
+			return;
+		}
+		try {
+			c.close();
+		}
+		catch(SQLException e) {
+			//nothing more we can do with it
+		}
+	}
+
+}
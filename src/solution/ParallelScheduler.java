@@ -0,0 +1,218 @@
+package solution;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.Pilot;
+import baseclasses.Schedule;
+
+/**
+ * The ParallelScheduler splits a scheduling horizon into partitions, one per base and slice of days,
+ * and allocates each partition on its own thread. A partition only uses the aircraft that start at its
+ * base and the crew based there, in a Schedule of its own, since Schedule isn't thread safe.
+ * A merge pass then copies each partition's choices into a single Schedule in order of departure. Anything
+ * that clashes where partitions meet, or that a partition couldn't crew, is allocated again from scratch there.
+ */
+public class ParallelScheduler implements IScheduler {
+
+	//how many days of departures go in each partition, by default
+	public static final int DEFAULT_SLICE_DAYS = 7;
+
+	//how far past the end of its slice a partition's rotations can run
+	private static final int SLICE_OVERRUN_DAYS = (int) (RotationBuilder.MAX_GROUND_TIME.toDays() * RotationBuilder.MAX_LEGS);
+
+	private final int sliceDays;
+	private final int parallelism;
+
+	/**
+	 * Creates a scheduler with week-long slices, using every available processor
+	 */
+	public ParallelScheduler() {
+		this(DEFAULT_SLICE_DAYS, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a scheduler with the given slice length and number of threads
+	 * @param sliceDays how many days of departures go in each partition
+	 * @param parallelism how many partitions to allocate at once
+	 * @throws IllegalArgumentException if either is less than 1
+	 */
+	public ParallelScheduler(int sliceDays, int parallelism) {
+		if(sliceDays < 1 || parallelism < 1) {
+			throw new IllegalArgumentException("Slice length and parallelism must both be at least 1");
+		}
+		this.sliceDays = sliceDays;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Generates a schedule, providing you with ready-loaded DAO objects to get your data from
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return The generated schedule - which must happen inside 2 minutes
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+		Schedule schedule = new Schedule(routeDAO, startDate, endDate);
+		List<List<FlightInfo>> rotations = new RotationBuilder(schedule.getRemainingAllocations()).build();
+
+		//the passenger numbers DAO may not be safe to share between threads, so read everything we need up front
+		IPassengerNumbersDAO passengerNumbers = new PassengerNumbersSnapshot(passengerNumbersDAO, schedule.getRemainingAllocations());
+
+		List<Partition> partitions = partition(rotations, aircraftDAO, crewDAO, startDate, endDate);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new Allocate(partitions, routeDAO, passengerNumbers));
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		//merge: rotations are in order of departure, so boundary clashes are settled in favour of the earlier one
+		Map<List<FlightInfo>, RotationAllocator.Assignment> assignments = new IdentityHashMap<>();
+		for(Partition p : partitions) {
+			assignments.putAll(p.assignments);
+		}
+		RotationAllocator allocator = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbers, schedule);
+		for(List<FlightInfo> rotation : rotations) {
+			allocator.allocate(rotation, assignments.get(rotation));
+		}
+		return schedule;
+	}
+
+	/**
+	 * Groups the rotations by the base they start from and the slice their first leg departs in.
+	 * Rotations from a base with no aircraft or crew of its own are left out, for the merge pass to allocate
+	 */
+	private List<Partition> partition(List<List<FlightInfo>> rotations, IAircraftDAO aircraftDAO, ICrewDAO crewDAO, LocalDate startDate, LocalDate endDate) {
+		Map<String, AircraftDAO> fleets = new HashMap<>();
+		for(Aircraft a : aircraftDAO.getAllAircraft()) {
+			fleets.computeIfAbsent(a.getStartingPosition(), k -> new AircraftDAO()).add(a);
+		}
+		Map<String, CrewDAO> crews = new HashMap<>();
+		for(Pilot p : crewDAO.getAllPilots()) {
+			crews.computeIfAbsent(p.getHomeBase(), k -> new CrewDAO()).add(p);
+		}
+		for(CabinCrew c : crewDAO.getAllCabinCrew()) {
+			crews.computeIfAbsent(c.getHomeBase(), k -> new CrewDAO()).add(c);
+		}
+
+		Map<String, Partition> partitions = new LinkedHashMap<>();
+		for(List<FlightInfo> rotation : rotations) {
+			String base = rotation.get(0).getFlight().getDepartureAirportCode();
+			if(!fleets.containsKey(base) || !crews.containsKey(base)) {
+				continue;
+			}
+			LocalDate departure = rotation.get(0).getDepartureDateTime().toLocalDate();
+			long slice = ChronoUnit.DAYS.between(startDate, departure) / sliceDays;
+			LocalDate sliceStart = startDate.plusDays(slice * sliceDays);
+			LocalDate sliceEnd = sliceStart.plusDays(sliceDays - 1L + SLICE_OVERRUN_DAYS);
+			if(sliceEnd.isAfter(endDate)) {
+				sliceEnd = endDate;
+			}
+			final LocalDate end = sliceEnd;
+			partitions.computeIfAbsent(base + "|" + slice, k -> new Partition(fleets.get(base), crews.get(base), sliceStart, end))
+					.rotations.add(rotation);
+		}
+		return new ArrayList<>(partitions.values());
+	}
+
+	/**
+	 * The rotations from one base in one slice of days, the resources to allocate them from,
+	 * and once allocated, what each rotation was given
+	 */
+	private static class Partition {
+		final AircraftDAO aircraft;
+		final CrewDAO crew;
+		final LocalDate startDate;
+		final LocalDate endDate;
+		final List<List<FlightInfo>> rotations = new ArrayList<>();
+		final Map<List<FlightInfo>, RotationAllocator.Assignment> assignments = new IdentityHashMap<>();
+
+		Partition(AircraftDAO aircraft, CrewDAO crew, LocalDate startDate, LocalDate endDate) {
+			this.aircraft = aircraft;
+			this.crew = crew;
+			this.startDate = startDate;
+			this.endDate = endDate;
+		}
+
+		/**
+		 * Allocates this partition's rotations in a Schedule of its own. FlightInfos belong to the Schedule
+		 * that made them, so each rotation is matched to its copy by flight number and departure time
+		 */
+		void allocate(IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbers) {
+			Schedule local = new Schedule(routeDAO, startDate, endDate);
+			Map<String, FlightInfo> flights = new HashMap<>();
+			for(FlightInfo f : local.getRemainingAllocations()) {
+				flights.put(key(f), f);
+			}
+
+			RotationAllocator allocator = new RotationAllocator(aircraft, crew, passengerNumbers, local);
+			for(List<FlightInfo> rotation : rotations) {
+				List<FlightInfo> copy = new ArrayList<>(rotation.size());
+				for(FlightInfo leg : rotation) {
+					FlightInfo f = flights.get(key(leg));
+					if(f != null) {
+						copy.add(f);
+					}
+				}
+				if(copy.size() == rotation.size() && allocator.allocate(copy)) {
+					assignments.put(rotation, new RotationAllocator.Assignment(local, copy.get(0)));
+				}
+			}
+		}
+
+		private static String key(FlightInfo f) {
+			return f.getFlight().getFlightNumber() + "|" + f.getDepartureDateTime();
+		}
+	}
+
+	/**
+	 * Allocates a list of partitions, splitting it in two until there's only one left to do
+	 */
+	private static class Allocate extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Partition> partitions;
+		private final IRouteDAO routeDAO;
+		private final IPassengerNumbersDAO passengerNumbers;
+
+		Allocate(List<Partition> partitions, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbers) {
+			this.partitions = partitions;
+			this.routeDAO = routeDAO;
+			this.passengerNumbers = passengerNumbers;
+		}
+
+		@Override
+		protected void compute() {
+			if(partitions.size() <= 1) {
+				for(Partition p : partitions) {
+					p.allocate(routeDAO, passengerNumbers);
+				}
+				return;
+			}
+			int half = partitions.size() / 2;
+			invokeAll(new Allocate(partitions.subList(0, half), routeDAO, passengerNumbers),
+					new Allocate(partitions.subList(half, partitions.size()), routeDAO, passengerNumbers));
+		}
+	}
+}
@@ -1,22 +1,11 @@
 package solution;
-import java.awt.List;
 import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.Date;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
-import java.time.LocalTime;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map.Entry;
-import java.util.Set;
-
-import javax.swing.text.html.HTMLDocument.Iterator;
 
 import baseclasses.DataLoadingException;
 import baseclasses.IPassengerNumbersDAO;
@@ -27,20 +16,26 @@ import baseclasses.IPassengerNumbersDAO;
  */
 public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 
-	 
-	HashMap<HashMap<LocalDate, Integer>, Integer > mapSibling = new HashMap<>();
-	HashMap<Integer, Integer> testFN = new HashMap<>(); 
-	HashMap<Integer, Integer> testLoadEst = new HashMap<>();
-	HashMap<Integer, LocalDate> testDate = new HashMap<>();
+	//Load estimates keyed by flight number and date packed together into one long, see key()
+	LongIntHashMap loadEstimates = new LongIntHashMap(-1);
+	
+	/**
+	 * Packs a flight number and date into the key used by the load estimate map
+	 * @param flightNumber the flight number, in the high 32 bits
+	 * @param date the date, as an epoch day in the low 32 bits
+	 * @return the packed key
+	 */
+	static long key(int flightNumber, LocalDate date) {
+		return ((long) flightNumber << 32) | (date.toEpochDay() & 0xFFFFFFFFL);
+	}
 	
 	/**
 	 * Returns the number of passenger number entries in the cache
 	 * @return the number of passenger number entries in the cache
 	 */ 
 	@Override
-	public int getNumberOfEntries() { 
-		// TODO Auto-generated method stub
-		return mapSibling.size(); 
+	public int getNumberOfEntries() {
+		return loadEstimates.size(); 
 	}
 
 	/**
@@ -51,25 +46,7 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	 */
 	@Override
 	public int getPassengerNumbersFor(int flightNumber, LocalDate date) {
-	
-		for(Entry<Integer, Integer> entry : testFN.entrySet()){
-			if(entry.getValue().equals(flightNumber)) {
-				
-			}
-		}
-		
-		for(Entry<Integer, LocalDate> entry2 : testDate.entrySet()) {
-			if(entry2.getValue().equals(date)) {
-				
-				int key = entry2.getKey(); 
-				int loadEstimation = testLoadEst.get(key);
-				
-				return loadEstimation; 
-			}
-		}	
-		
-		return -1; 
-
+		return loadEstimates.get(key(flightNumber, date)); 
 	}
 
 	/**
@@ -81,44 +58,23 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	 */
 	@Override
 	public void loadPassengerNumbersData(Path p) throws DataLoadingException {
-		// TODO Auto-generated method stub
-		Connection c = null; 
-		reset(); 
-		try {
-			//connect to database
-			c = DriverManager.getConnection("jdbc:sqlite:" + p.toString()); 
-			 
-			//run query
-			Statement s = c.createStatement(); 
-			ResultSet rs = s.executeQuery("SELECT * FROM PassengerNumbers ORDER BY Date ASC"); 
+		//connect to database, closing everything once we're done
+		try(Connection c = DriverManager.getConnection("jdbc:sqlite:" + p.toString());
+				Statement s = c.createStatement();
+				ResultSet rs = s.executeQuery("SELECT FlightNumber, Date, LoadEstimate FROM PassengerNumbers")) {
 			
-			//get results
+			//get results, later rows for the same flight and date overwrite earlier ones
 			while(rs.next()) {
-				int size = rs.getRow(); 
-				LocalDate Dates = LocalDate.parse(rs.getString("Date")); 
-				 
+				int flightNumber = rs.getInt("FlightNumber"); 
+				LocalDate date = LocalDate.parse(rs.getString("Date")); 
 				int loadEstimate = rs.getInt("LoadEstimate");
 				
-				int FN = rs.getInt("FlightNumber"); 
-				HashMap<LocalDate,Integer> mapParent = new HashMap<LocalDate, Integer>();
-				 
-				testFN.put(size, FN); 
-				testLoadEst.put(size, loadEstimate); 
-				testDate.put(size, Dates); 
-				
-				mapParent.put(Dates, FN );
-				mapSibling.put(mapParent, loadEstimate);
-				
-				
-				
+				loadEstimates.put(key(flightNumber, date), loadEstimate);
 			}
-			//System.out.println(mapSibling.toString());
 		}
-		catch(SQLException se){
-			throw new DataLoadingException(se);
-			
-	}
-		
+		catch(SQLException | RuntimeException e){
+			throw new DataLoadingException(e);
+		}
 	}
 
 	/**
@@ -126,11 +82,7 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	 */
 	@Override
 	public void reset() {
-		// TODO Auto-generated method stub
-		mapSibling.clear();
-		testFN.clear();
-		testLoadEst.clear();
-		testDate.clear();
+		loadEstimates.clear();
 	}
 
 }
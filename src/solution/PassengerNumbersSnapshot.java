@@ -0,0 +1,81 @@
+package solution;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import baseclasses.DataLoadingException;
+import baseclasses.FlightInfo;
+import baseclasses.IPassengerNumbersDAO;
+
+/**
+ * A PassengerNumbersSnapshot is a copy of the passenger numbers for a set of flights, safe to read from any
+ * thread, for schedulers that allocate on several threads at once when the DAO they were given may not be.
+ * It can be loaded into or reset like any other DAO, but not while it is being read
+ */
+class PassengerNumbersSnapshot implements IPassengerNumbersDAO {
+	//what the map gives for a flight that wasn't copied, which can't be mistaken for -1, the DAO's "no forecast"
+	private static final int NOT_COPIED = Integer.MIN_VALUE;
+
+	private final LongIntHashMap loadEstimates = new LongIntHashMap(NOT_COPIED);
+	//the DAO to ask about flights that weren't copied, or null once the snapshot has been reset
+	private IPassengerNumbersDAO source;
+
+	/**
+	 * Copies the passenger numbers for the given flights
+	 * @param source the DAO to copy from
+	 * @param flights the flights to copy the passenger numbers of
+	 */
+	PassengerNumbersSnapshot(IPassengerNumbersDAO source, List<FlightInfo> flights) {
+		this.source = source;
+		for(FlightInfo f : flights) {
+			int flightNumber = f.getFlight().getFlightNumber();
+			LocalDate date = f.getDepartureDateTime().toLocalDate();
+			loadEstimates.put(PassengerNumbersDAO.key(flightNumber, date), source.getPassengerNumbersFor(flightNumber, date));
+		}
+	}
+
+	@Override
+	public int getPassengerNumbersFor(int flightNumber, LocalDate date) {
+		int estimate = loadEstimates.get(PassengerNumbersDAO.key(flightNumber, date));
+		if(estimate == NOT_COPIED) {
+			if(source == null) {
+				return -1;
+			}
+			//not one of our flights, so ask the DAO, one thread at a time
+			synchronized(source) {
+				return source.getPassengerNumbersFor(flightNumber, date);
+			}
+		}
+		return estimate;
+	}
+
+	@Override
+	public int getNumberOfEntries() {
+		return loadEstimates.size();
+	}
+
+	/**
+	 * Loads the passenger numbers from a database and adds them to the snapshot, replacing any it already
+	 * had for the same flights. This must not be called while other threads are reading
+	 * @param p The path of the SQLite database to load data from
+	 * @throws DataLoadingException If there is a problem loading from the database
+	 */
+	@Override
+	public void loadPassengerNumbersData(Path p) throws DataLoadingException {
+		PassengerNumbersDAO loaded = new PassengerNumbersDAO();
+		loaded.loadPassengerNumbersData(p);
+		loaded.loadEstimates.forEach(loadEstimates::put);
+	}
+
+	/**
+	 * Removes all the passenger numbers, leaving the snapshot empty. The DAO it was made from isn't asked
+	 * about any flight after this, so only numbers loaded in afterwards are found.
+	 * This must not be called while other threads are reading
+	 */
+	@Override
+	public void reset() {
+		loadEstimates.clear();
+		source = null;
+	}
+}
+
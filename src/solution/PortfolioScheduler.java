@@ -0,0 +1,283 @@
+package solution;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.QualityScoreCalculator;
+import baseclasses.Schedule;
+
+/**
+ * The PortfolioScheduler runs several variants of the constructive scheduler at once, one per thread, each
+ * building its own Schedules, and returns the best schedule any of them found within the time budget.
+ * The variants differ in the order rotations are allocated within each day, whether ties between aircraft
+ * and crew are broken at random and with what seed, and whether crew are taken from the pool or searched for.
+ * Schedules are compared the same way as AnytimeScheduler compares them.
+ */
+public class PortfolioScheduler implements IScheduler {
+
+	//SchedulerRunner gives up after 2 minutes, so leave some time to spare
+	public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(110);
+
+	//how much of the budget to keep back for collecting the variants' results
+	private static final Duration MARGIN = Duration.ofMillis(500);
+
+	/**
+	 * The order a variant allocates the rotations that start on the same day
+	 */
+	enum Ordering {
+		//in order of departure, as Scheduler does
+		DEPARTURE,
+		//latest departure first
+		REVERSE,
+		//shuffled
+		SHUFFLED
+	}
+
+	private final Duration budget;
+	private final int variants;
+	private final long seed;
+
+	//how the last call to generateSchedule() went
+	private int schedulesBuilt;
+	private long bestScore = -1;
+
+	/**
+	 * Creates a scheduler that uses all of the default budget, running one variant per processor
+	 */
+	public PortfolioScheduler() {
+		this(DEFAULT_BUDGET, Runtime.getRuntime().availableProcessors(), 0);
+	}
+
+	/**
+	 * Creates a scheduler with the given budget and number of variants
+	 * @param budget how long generateSchedule() may run for, which must be more than the half second kept back
+	 * for collecting the variants' results
+	 * @param variants how many variants to run at once, each on its own thread
+	 * @param seed the seed the variants' random tie breaks are worked out from
+	 * @throws IllegalArgumentException if the budget leaves the variants no time, or there are no variants
+	 */
+	public PortfolioScheduler(Duration budget, int variants, long seed) {
+		if(budget.compareTo(MARGIN) <= 0 || variants < 1) {
+			throw new IllegalArgumentException("The budget must be more than " + MARGIN.toMillis() + "ms and there must be at least one variant");
+		}
+		this.budget = budget;
+		this.variants = variants;
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates a schedule, providing you with ready-loaded DAO objects to get your data from
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return The best schedule any variant found within the budget
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+		long started = System.nanoTime();
+		long deadline = started + budget.minus(MARGIN).toNanos();
+		schedulesBuilt = 0;
+		bestScore = -1;
+
+		//the passenger numbers DAO may not be safe to share between threads, so read everything we need up front
+		Schedule horizon = new Schedule(routeDAO, startDate, endDate);
+		IPassengerNumbersDAO passengerNumbers = new PassengerNumbersSnapshot(passengerNumbersDAO, horizon.getRemainingAllocations());
+
+		ExecutorService executor = Executors.newFixedThreadPool(variants, r -> {
+			Thread t = new Thread(r, "PortfolioScheduler");
+			t.setDaemon(true);
+			return t;
+		});
+		List<Future<Result>> futures = new ArrayList<>();
+		try {
+			for(int v = 0; v < variants; v++) {
+				Variant variant = new Variant(v, seed);
+				futures.add(executor.submit(() -> variant.run(aircraftDAO, crewDAO, routeDAO, passengerNumbers, startDate, endDate, deadline)));
+			}
+
+			Result best = null;
+			for(Future<Result> f : futures) {
+				Result r = await(f, started + budget.toNanos());
+				if(r == null) {
+					continue;
+				}
+				schedulesBuilt += r.built;
+				if(best == null || AnytimeScheduler.isBetter(r.schedule, r.score, best.schedule, best.score)) {
+					best = r;
+				}
+			}
+			if(best == null) {
+				return horizon;
+			}
+			bestScore = best.score;
+			return best.schedule;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns how many schedules all the variants built between them on the last call to generateSchedule()
+	 * @return the number of schedules built
+	 */
+	public int getSchedulesBuilt() {
+		return schedulesBuilt;
+	}
+
+	/**
+	 * Returns the quality score of the schedule the last call to generateSchedule() returned
+	 * @return the score, or -1 if that schedule wasn't complete
+	 */
+	public long getBestScore() {
+		return bestScore;
+	}
+
+	/**
+	 * Waits for a variant to finish, until the given System.nanoTime() at the latest
+	 * @return its result, or null if it failed or didn't finish in time
+	 */
+	private static Result await(Future<Result> f, long until) {
+		try {
+			return f.get(Math.max(0, until - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+		catch(TimeoutException | ExecutionException e) {
+			f.cancel(true);
+			return null;
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			f.cancel(true);
+			return null;
+		}
+	}
+
+	/**
+	 * The best schedule one variant built, and how many it built
+	 */
+	private static class Result {
+		final Schedule schedule;
+		final long score;
+		final int built;
+
+		Result(Schedule schedule, long score, int built) {
+			this.schedule = schedule;
+			this.score = score;
+			this.built = built;
+		}
+	}
+
+	/**
+	 * One way of running the constructive scheduler. Variant 0 is exactly what Scheduler does; the rest
+	 * work through the orderings, then through taking crew from the pool or searching for them,
+	 * with each one after the first breaking ties at random from its own seed
+	 */
+	static class Variant {
+		final Ordering ordering;
+		final boolean fillGaps;
+		final long seed;
+		final boolean random;
+
+		Variant(int index, long seed) {
+			Ordering[] orderings = Ordering.values();
+			this.ordering = orderings[index % orderings.length];
+			this.fillGaps = (index / orderings.length) % 2 == 1;
+			this.seed = seed + index;
+			this.random = index > 0;
+		}
+
+		/**
+		 * Keeps building schedules this way until the deadline, with a new seed each time if ties are broken
+		 * at random, and returns the best. A variant without randomness only builds one
+		 */
+		Result run(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbers, LocalDate startDate, LocalDate endDate, long deadline) {
+			Random seeds = new Random(seed);
+			Schedule best = null;
+			long bestScore = -1;
+			int built = 0;
+			long slowest = 0;
+			do {
+				long started = System.nanoTime();
+				Random tieBreak = random || ordering == Ordering.SHUFFLED ? new Random(seeds.nextLong()) : null;
+				Schedule candidate = build(aircraftDAO, crewDAO, routeDAO, passengerNumbers, startDate, endDate, tieBreak, deadline);
+				built++;
+				if(Thread.currentThread().isInterrupted() || (best != null && System.nanoTime() - deadline >= 0)) {
+					break;
+				}
+				long score = -1;
+				if(candidate.isCompleted() && System.nanoTime() - deadline < 0) {
+					score = new QualityScoreCalculator(aircraftDAO, crewDAO, passengerNumbers, candidate).calculateQualityScore();
+				}
+				if(best == null || AnytimeScheduler.isBetter(candidate, score, best, bestScore)) {
+					best = candidate;
+					bestScore = score;
+				}
+				slowest = Math.max(slowest, System.nanoTime() - started);
+			}
+			while(random && System.nanoTime() + slowest - deadline < 0);
+			return new Result(best, bestScore, built);
+		}
+
+		private Schedule build(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbers, LocalDate startDate, LocalDate endDate, Random tieBreak, long deadline) {
+			Schedule schedule = new Schedule(routeDAO, startDate, endDate);
+			List<List<FlightInfo>> rotations = new RotationBuilder(schedule.getRemainingAllocations()).build();
+			order(rotations, tieBreak);
+
+			RotationAllocator allocator = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbers, schedule);
+			allocator.setFillGaps(fillGaps);
+			if(random) {
+				allocator.setTieBreak(tieBreak);
+			}
+			for(List<FlightInfo> rotation : rotations) {
+				if(System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				allocator.allocate(rotation);
+			}
+			return schedule;
+		}
+
+		/**
+		 * Puts the rotations that start on the same day into this variant's order
+		 */
+		private void order(List<List<FlightInfo>> rotations, Random tieBreak) {
+			switch(ordering) {
+			case REVERSE:
+				int from = 0;
+				while(from < rotations.size()) {
+					LocalDate day = rotations.get(from).get(0).getDepartureDateTime().toLocalDate();
+					int to = from + 1;
+					while(to < rotations.size() && rotations.get(to).get(0).getDepartureDateTime().toLocalDate().equals(day)) {
+						to++;
+					}
+					Collections.reverse(rotations.subList(from, to));
+					from = to;
+				}
+				break;
+			case SHUFFLED:
+				AnytimeScheduler.shuffleWithinDays(rotations, tieBreak);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,524 @@
+package solution;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.Pilot;
+import baseclasses.Pilot.Rank;
+import baseclasses.Schedule;
+import baseclasses.Utilities;
+
+/**
+ * The QualityEvaluator keeps a running total of the same quality score QualityScoreCalculator gives,
+ * rule by rule, as flights are completed and unallocated. Rather than scoring the whole schedule again,
+ * adding or removing a flight only looks at what it touches: the flight itself, the flights either side
+ * of it for its aircraft and each crew member, and the week and month it falls in for each crew member.
+ * QualityScoreCalculator works through each pilot's flights as captain followed by their flights as first
+ * officer, rather than all in order of departure, and this does the same so the scores match exactly.
+ */
+class QualityEvaluator {
+
+	//The rules, in the order QualityScoreCalculator adds them up
+	static final int CAPACITY = 0;
+	static final int SHORT_TURNAROUND = 1;
+	static final int POSITIONING = 2;
+	static final int WRONG_SEAT = 3;
+	static final int UNQUALIFIED_CREW = 4;
+	static final int NIGHTLY_REST = 5;
+	static final int WEEKLY_REST = 6;
+	static final int REST_BEFORE_DEPARTING = 7;
+	static final int REST_AFTER_LANDING = 8;
+	static final int OUTBOUND_WITHOUT_INBOUND = 9;
+	static final int INBOUND_WITHOUT_OUTBOUND = 10;
+	static final int MONTHLY_HOURS = 11;
+	static final int RULES = 12;
+
+	private static final long MAX_MONTHLY_SECONDS = Duration.ofHours(100).getSeconds();
+
+	/**
+	 * The flights one crew member is on, in the order QualityScoreCalculator looks at them,
+	 * and what they're costing in each week and month of the horizon
+	 */
+	private static class CrewFlights {
+		final Crew crew;
+		//cabin crew's flights, or a pilot's flights as captain
+		final List<FlightInfo> first = new ArrayList<>();
+		//a pilot's flights as first officer, empty for cabin crew
+		final List<FlightInfo> second = new ArrayList<>();
+		final boolean[] weekWithoutRest;
+		final long[] monthSeconds;
+
+		CrewFlights(Crew crew, int weeks, int months) {
+			this.crew = crew;
+			this.weekWithoutRest = new boolean[weeks];
+			this.monthSeconds = new long[months];
+		}
+
+		int size() {
+			return first.size() + second.size();
+		}
+
+		FlightInfo get(int i) {
+			return i < first.size() ? first.get(i) : second.get(i - first.size());
+		}
+	}
+
+	private final IPassengerNumbersDAO passengerNumbersDAO;
+	private final long[] points = new long[RULES];
+
+	private final Map<FlightInfo, RotationAllocator.Assignment> flights = new IdentityHashMap<>();
+	private final Map<Aircraft, List<FlightInfo>> aircraftFlights = new IdentityHashMap<>();
+	private final Map<Crew, CrewFlights> crewFlights = new IdentityHashMap<>();
+
+	//The weeks and months of the horizon, worked out the same way as the weekly rest and monthly hours rules
+	private final List<LocalDateTime> weekStarts = new ArrayList<>();
+	private final List<LocalDateTime> monthStarts = new ArrayList<>();
+
+	//the longest flight seen, so we know how far back to look for flights landing in a week
+	private Duration longestFlight = Duration.ZERO;
+
+	/**
+	 * Creates an evaluator for a schedule, starting from the flights it has already completed
+	 * @param aircraftDAO the aircraft the aircraft rules are checked for
+	 * @param crewDAO the crew the crew rules are checked for
+	 * @param passengerNumbersDAO the passenger forecasts the capacity rule compares against
+	 * @param schedule the schedule to evaluate
+	 */
+	QualityEvaluator(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IPassengerNumbersDAO passengerNumbersDAO, Schedule schedule) {
+		this.passengerNumbersDAO = passengerNumbersDAO;
+		LocalDateTime end = schedule.getEndDate().atTime(LocalTime.MIDNIGHT);
+		for(LocalDateTime d = schedule.getStartDate().atTime(LocalTime.MIDNIGHT); d.isBefore(end); d = d.plusDays(7)) {
+			weekStarts.add(d);
+		}
+		for(LocalDateTime d = schedule.getStartDate().atTime(LocalTime.MIDNIGHT); d.isBefore(end); d = d.plusMonths(1)) {
+			monthStarts.add(d);
+		}
+
+		for(Aircraft a : aircraftDAO.getAllAircraft()) {
+			aircraftFlights.put(a, new ArrayList<>());
+		}
+		for(Crew c : crewDAO.getAllCrew()) {
+			crewFlights.put(c, new CrewFlights(c, weekStarts.size(), monthStarts.size()));
+		}
+		for(FlightInfo f : schedule.getCompletedAllocations()) {
+			add(f, schedule);
+		}
+	}
+
+	/**
+	 * Returns the score of the flights added so far, which is what QualityScoreCalculator would give
+	 * once the schedule is complete
+	 * @return the total of every rule's points
+	 */
+	long getScore() {
+		long total = 0;
+		for(long p : points) {
+			total += p;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the points from each rule, in the order QualityScoreCalculator describes them
+	 * @return a copy of the points, indexed by CAPACITY, SHORT_TURNAROUND and so on
+	 */
+	long[] getPoints() {
+		return points.clone();
+	}
+
+	/**
+	 * Adds a flight the schedule has just completed
+	 * @param f the flight, which must have its aircraft and crew allocated in the schedule
+	 * @param schedule the schedule it was completed in
+	 * @return how much the score changed by
+	 * @throws IllegalStateException if the flight has already been added
+	 */
+	long add(FlightInfo f, Schedule schedule) {
+		if(flights.containsKey(f)) {
+			throw new IllegalStateException("This flight has already been added");
+		}
+		long before = getScore();
+		RotationAllocator.Assignment a = new RotationAllocator.Assignment(schedule, f);
+		flights.put(f, a);
+		if(f.getFlight().getDuration().compareTo(longestFlight) > 0) {
+			longestFlight = f.getFlight().getDuration();
+		}
+		flightPoints(f, a, 1);
+
+		List<FlightInfo> planeFlights = aircraftFlights.get(a.aircraft);
+		if(planeFlights != null) {
+			int i = insert(planeFlights, f);
+			if(i > 0 && i < planeFlights.size() - 1) {
+				aircraftPairPoints(planeFlights.get(i - 1), planeFlights.get(i + 1), -1);
+			}
+			if(i > 0) {
+				aircraftPairPoints(planeFlights.get(i - 1), f, 1);
+			}
+			if(i < planeFlights.size() - 1) {
+				aircraftPairPoints(f, planeFlights.get(i + 1), 1);
+			}
+		}
+
+		for(CabinCrew c : a.cabinCrew) {
+			addToCrew(crewFlights.get(c), f, false);
+		}
+		addToCrew(crewFlights.get(a.captain), f, false);
+		addToCrew(crewFlights.get(a.firstOfficer), f, true);
+		return getScore() - before;
+	}
+
+	/**
+	 * Removes a flight that was added, e.g. just before it's unallocated
+	 * @param f the flight
+	 * @return how much the score changed by, or 0 if the flight wasn't added
+	 */
+	long remove(FlightInfo f) {
+		RotationAllocator.Assignment a = flights.remove(f);
+		if(a == null) {
+			return 0;
+		}
+		long before = getScore();
+		flightPoints(f, a, -1);
+
+		List<FlightInfo> planeFlights = aircraftFlights.get(a.aircraft);
+		if(planeFlights != null) {
+			int i = indexOf(planeFlights, f);
+			if(i > 0) {
+				aircraftPairPoints(planeFlights.get(i - 1), f, -1);
+			}
+			if(i < planeFlights.size() - 1) {
+				aircraftPairPoints(f, planeFlights.get(i + 1), -1);
+			}
+			if(i > 0 && i < planeFlights.size() - 1) {
+				aircraftPairPoints(planeFlights.get(i - 1), planeFlights.get(i + 1), 1);
+			}
+			planeFlights.remove(i);
+		}
+
+		for(CabinCrew c : a.cabinCrew) {
+			removeFromCrew(crewFlights.get(c), f, false);
+		}
+		removeFromCrew(crewFlights.get(a.captain), f, false);
+		removeFromCrew(crewFlights.get(a.firstOfficer), f, true);
+		return getScore() - before;
+	}
+
+	/**
+	 * The capacity, wrong seat and unqualified crew rules, which only depend on the flight itself
+	 */
+	private void flightPoints(FlightInfo f, RotationAllocator.Assignment a, int sign) {
+		int forecast = passengerNumbersDAO.getPassengerNumbersFor(f.getFlight().getFlightNumber(), f.getDepartureDateTime().toLocalDate());
+		int seats = a.aircraft.getSeats();
+		if(seats < forecast) {
+			points[CAPACITY] += sign * (long) (forecast - seats) * (Utilities.airportIsInUK(f.getFlight().getDepartureAirportCode()) ? 50 : 100);
+		}
+		else if(seats > forecast) {
+			points[CAPACITY] += sign * (long) (seats - forecast);
+		}
+
+		if(a.captain.getRank() == Rank.FIRST_OFFICER) {
+			points[WRONG_SEAT] += sign * 50000L;
+		}
+		if(a.firstOfficer.getRank() == Rank.CAPTAIN) {
+			points[WRONG_SEAT] += sign * 1000L;
+		}
+
+		if(!a.captain.isQualifiedFor(a.aircraft)) {
+			points[UNQUALIFIED_CREW] += sign * 50000L;
+		}
+		if(!a.firstOfficer.isQualifiedFor(a.aircraft)) {
+			points[UNQUALIFIED_CREW] += sign * 50000L;
+		}
+		for(CabinCrew c : a.cabinCrew) {
+			if(!c.isQualifiedFor(a.aircraft)) {
+				points[UNQUALIFIED_CREW] += sign * 50000L;
+			}
+		}
+	}
+
+	/**
+	 * The short turnaround and positioning rules, for one aircraft flying one flight after another
+	 */
+	private void aircraftPairPoints(FlightInfo previous, FlightInfo next, int sign) {
+		long turnaround = previous.getLandingDateTime().until(next.getDepartureDateTime(), ChronoUnit.MINUTES);
+		if(turnaround < 15) {
+			points[SHORT_TURNAROUND] += sign * 500L;
+		}
+		else if(turnaround < 30) {
+			points[SHORT_TURNAROUND] += sign * 100L;
+		}
+		if(!previous.getFlight().getArrivalAirportCode().equals(next.getFlight().getDepartureAirportCode())) {
+			points[POSITIONING] += sign * 20000L;
+		}
+	}
+
+	/**
+	 * The rest and inbound/outbound rules, for one crew member working one flight after another
+	 */
+	private void crewPairPoints(Crew c, FlightInfo previous, FlightInfo next, int sign) {
+		String landedAt = previous.getFlight().getArrivalAirportCode();
+		String departsFrom = next.getFlight().getDepartureAirportCode();
+		long rest = previous.getLandingDateTime().until(next.getDepartureDateTime(), ChronoUnit.HOURS);
+		boolean landedInUK = Utilities.airportIsInUK(landedAt);
+		boolean departsFromUK = Utilities.airportIsInUK(departsFrom);
+
+		if(departsFromUK && landedInUK && rest < 12) {
+			points[NIGHTLY_REST] += sign * 20000L;
+		}
+		if(departsFromUK && !departsFrom.equals(c.getHomeBase()) && rest < 24) {
+			points[REST_BEFORE_DEPARTING] += sign * 500L;
+		}
+		if(landedInUK && !landedAt.equals(c.getHomeBase()) && rest < 24) {
+			points[REST_AFTER_LANDING] += sign * 500L;
+		}
+		//the outbound and inbound rules are the same test, from either end
+		long unpaired = 0;
+		if(!departsFrom.equals(landedAt) || rest > 4) {
+			unpaired = rest < 48 ? 6000L : 1000L;
+		}
+		if(!landedInUK) {
+			points[OUTBOUND_WITHOUT_INBOUND] += sign * unpaired;
+		}
+		if(!departsFromUK) {
+			points[INBOUND_WITHOUT_OUTBOUND] += sign * unpaired;
+		}
+	}
+
+	private void addToCrew(CrewFlights cf, FlightInfo f, boolean asSecond) {
+		if(cf == null) {
+			return;
+		}
+		int[] weeks = weeksOf(f);
+		int month = monthOf(f);
+		for(int w : weeks) {
+			weeklyPoints(cf, w, -1);
+		}
+		monthlyPoints(cf, month, -1);
+
+		List<FlightInfo> list = asSecond ? cf.second : cf.first;
+		int i = insertionPoint(list, f);
+		int p = asSecond ? cf.first.size() + i : i;
+		if(p > 0 && p < cf.size()) {
+			crewPairPoints(cf.crew, cf.get(p - 1), cf.get(p), -1);
+		}
+		list.add(i, f);
+		if(p > 0) {
+			crewPairPoints(cf.crew, cf.get(p - 1), f, 1);
+		}
+		if(p < cf.size() - 1) {
+			crewPairPoints(cf.crew, f, cf.get(p + 1), 1);
+		}
+
+		if(month >= 0) {
+			cf.monthSeconds[month] += f.getFlight().getDuration().getSeconds();
+		}
+		monthlyPoints(cf, month, 1);
+		for(int w : weeks) {
+			weeklyPoints(cf, w, 1);
+		}
+	}
+
+	private void removeFromCrew(CrewFlights cf, FlightInfo f, boolean asSecond) {
+		if(cf == null) {
+			return;
+		}
+		int[] weeks = weeksOf(f);
+		int month = monthOf(f);
+		for(int w : weeks) {
+			weeklyPoints(cf, w, -1);
+		}
+		monthlyPoints(cf, month, -1);
+
+		List<FlightInfo> list = asSecond ? cf.second : cf.first;
+		int i = indexOf(list, f);
+		int p = asSecond ? cf.first.size() + i : i;
+		if(p > 0) {
+			crewPairPoints(cf.crew, cf.get(p - 1), f, -1);
+		}
+		if(p < cf.size() - 1) {
+			crewPairPoints(cf.crew, f, cf.get(p + 1), -1);
+		}
+		list.remove(i);
+		if(p > 0 && p < cf.size()) {
+			crewPairPoints(cf.crew, cf.get(p - 1), cf.get(p), 1);
+		}
+
+		if(month >= 0) {
+			cf.monthSeconds[month] -= f.getFlight().getDuration().getSeconds();
+		}
+		monthlyPoints(cf, month, 1);
+		for(int w : weeks) {
+			weeklyPoints(cf, w, 1);
+		}
+	}
+
+	/**
+	 * Adds or takes away the monthly hours points for one crew member's month, as it stands
+	 */
+	private void monthlyPoints(CrewFlights cf, int month, int sign) {
+		if(month < 0) {
+			return;
+		}
+		long over = cf.monthSeconds[month] - MAX_MONTHLY_SECONDS;
+		if(over > 0) {
+			points[MONTHLY_HOURS] += sign * 10L * (over / 3600);
+		}
+	}
+
+	/**
+	 * Adds or takes away the weekly rest points for one crew member's week. Working out whether a week has
+	 * a long enough break means going through the flights in it; when adding points it's worked out again
+	 */
+	private void weeklyPoints(CrewFlights cf, int week, int sign) {
+		if(sign > 0) {
+			cf.weekWithoutRest[week] = !hasWeeklyRest(cf, week);
+		}
+		if(cf.weekWithoutRest[week]) {
+			points[WEEKLY_REST] += sign * 10000L;
+		}
+	}
+
+	/**
+	 * Checks for a 36 hour gap between the start of a week, the departures and landings in it
+	 * and its end, taken in the order the weekly rest rule takes them
+	 */
+	private boolean hasWeeklyRest(CrewFlights cf, int week) {
+		LocalDateTime weekStart = weekStarts.get(week);
+		LocalDateTime weekEnd = weekStart.plusDays(7);
+		List<LocalDateTime> times = new ArrayList<>();
+		times.add(weekStart);
+		addTimes(cf.first, weekStart, weekEnd, times);
+		addTimes(cf.second, weekStart, weekEnd, times);
+		times.add(weekEnd);
+		for(int i = 0; i < times.size() - 1; i++) {
+			if(times.get(i).until(times.get(i + 1), ChronoUnit.HOURS) >= 36) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addTimes(List<FlightInfo> list, LocalDateTime weekStart, LocalDateTime weekEnd, List<LocalDateTime> times) {
+		for(int i = lowerBound(list, weekStart.minus(longestFlight)); i < list.size(); i++) {
+			FlightInfo f = list.get(i);
+			if(!f.getDepartureDateTime().isBefore(weekEnd)) {
+				break;
+			}
+			if(f.getDepartureDateTime().isAfter(weekStart)) {
+				times.add(f.getDepartureDateTime());
+			}
+			if(f.getLandingDateTime().isAfter(weekStart) && f.getLandingDateTime().isBefore(weekEnd)) {
+				times.add(f.getLandingDateTime());
+			}
+		}
+	}
+
+	/**
+	 * Finds the weeks a flight departs or lands in, since those are the only ones it can change
+	 */
+	private int[] weeksOf(FlightInfo f) {
+		int departs = weekContaining(f.getDepartureDateTime());
+		int lands = weekContaining(f.getLandingDateTime());
+		if(departs < 0) {
+			return lands < 0 ? new int[0] : new int[] {lands};
+		}
+		return lands < 0 || lands == departs ? new int[] {departs} : new int[] {departs, lands};
+	}
+
+	/**
+	 * Finds the week strictly containing a time, or -1 if it's outside them all or exactly where two meet
+	 */
+	private int weekContaining(LocalDateTime t) {
+		if(weekStarts.isEmpty() || !t.isAfter(weekStarts.get(0))) {
+			return -1;
+		}
+		int week = (int) (ChronoUnit.DAYS.between(weekStarts.get(0), t) / 7);
+		if(week >= weekStarts.size() || !t.isAfter(weekStarts.get(week))) {
+			return -1;
+		}
+		return week;
+	}
+
+	/**
+	 * Finds the month a flight counts towards: it must depart after the month starts and land before it ends
+	 * @return the month, or -1 if it doesn't count towards any
+	 */
+	private int monthOf(FlightInfo f) {
+		LocalDateTime departs = f.getDepartureDateTime();
+		for(int m = monthStarts.size() - 1; m >= 0; m--) {
+			if(departs.isAfter(monthStarts.get(m))) {
+				return f.getLandingDateTime().isBefore(monthStarts.get(m).plusMonths(1)) ? m : -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Inserts a flight into a list kept in order of departure, after any that depart at the same time
+	 * the way a stable sort would leave them
+	 * @return where it went
+	 */
+	private static int insert(List<FlightInfo> list, FlightInfo f) {
+		int i = insertionPoint(list, f);
+		list.add(i, f);
+		return i;
+	}
+
+	private static int insertionPoint(List<FlightInfo> list, FlightInfo f) {
+		int lo = 0;
+		int hi = list.size();
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(list.get(mid).getDepartureDateTime().isAfter(f.getDepartureDateTime())) {
+				hi = mid;
+			}
+			else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Finds the first flight in a list that departs at or after the given time
+	 */
+	private static int lowerBound(List<FlightInfo> list, LocalDateTime t) {
+		int lo = 0;
+		int hi = list.size();
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(list.get(mid).getDepartureDateTime().isBefore(t)) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Finds a flight in a list kept in order of departure, by identity
+	 */
+	private static int indexOf(List<FlightInfo> list, FlightInfo f) {
+		for(int i = lowerBound(list, f.getDepartureDateTime()); i < list.size(); i++) {
+			if(list.get(i) == f) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("Flight not found");
+	}
+}
@@ -0,0 +1,89 @@
+package solution;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import baseclasses.DataLoadingException;
+import baseclasses.FlightInfo;
+import baseclasses.QualityScoreCalculator;
+import baseclasses.Schedule;
+
+/**
+ * Checks that QualityEvaluator gives exactly the score QualityScoreCalculator does, on each of the bundled
+ * data sets. Each schedule is scored once by an evaluator built from it, then again after every one of a
+ * number of moves that unallocate a neighbourhood of rotations and allocate them again, as LargeNeighbourhoodScheduler does.
+ * Run it from the project root, optionally with the data directory as its argument; it exits with status 1 on any mismatch
+ */
+public class QualityEvaluatorCheck {
+
+	//how many moves to check on each data set
+	private static final int MOVES = 20;
+
+	public static void main(String[] args) throws DataLoadingException {
+		Path data = Paths.get(args.length > 0 ? args[0] : "./data");
+		LocalDate start = LocalDate.parse("2020-07-01");
+		LocalDate end = LocalDate.parse("2020-08-01");
+
+		boolean matched = true;
+		matched &= check("mini", data.resolve("mini_aircraft.csv"), data.resolve("mini_crew.json"), data.resolve("mini_routes.xml"), data.resolve("mini_passengers.db"), start, end);
+		matched &= check("schedule", data.resolve("schedule_aircraft.csv"), data.resolve("schedule_crew.json"), data.resolve("schedule_routes.xml"), data.resolve("schedule_passengers.db"), start, end);
+		matched &= check("full", data.resolve("aircraft.csv"), data.resolve("crew.json"), data.resolve("routes.xml"), data.resolve("passengernumbers.db"), start, end);
+
+		System.out.println(matched ? "All scores match" : "Scores differ");
+		if(!matched) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks one data set
+	 * @return true if every score matched
+	 */
+	private static boolean check(String name, Path aircraftFile, Path crewFile, Path routeFile, Path passengerNumbersFile, LocalDate start, LocalDate end) throws DataLoadingException {
+		AircraftDAO aircraft = new AircraftDAO();
+		CrewDAO crew = new CrewDAO();
+		RouteDAO routes = new RouteDAO();
+		PassengerNumbersDAO passengers = new PassengerNumbersDAO();
+		new DataLoader(aircraft, crew, routes, passengers).load(aircraftFile, crewFile, routeFile, passengerNumbersFile);
+
+		Schedule schedule = new Schedule(routes, start, end);
+		List<List<FlightInfo>> rotations = new RotationBuilder(schedule.getRemainingAllocations()).build();
+		RotationAllocator allocator = new RotationAllocator(aircraft, crew, passengers, schedule);
+		for(List<FlightInfo> rotation : rotations) {
+			allocator.allocate(rotation);
+		}
+
+		//built from the finished schedule
+		QualityEvaluator evaluator = new QualityEvaluator(aircraft, crew, passengers, schedule);
+		boolean matched = compare(name + " built", evaluator.getScore(), new QualityScoreCalculator(aircraft, crew, passengers, schedule).calculateQualityScore());
+
+		//kept up to date move by move
+		allocator.setEvaluator(evaluator);
+		allocator.setFillGaps(true);
+		Random random = new Random(name.hashCode());
+		allocator.setTieBreak(random);
+		for(int m = 0; m < MOVES && !rotations.isEmpty(); m++) {
+			List<List<FlightInfo>> move = LargeNeighbourhoodScheduler.neighbourhood(rotations, schedule, random);
+			for(List<FlightInfo> rotation : move) {
+				allocator.unAllocate(rotation);
+			}
+			List<List<FlightInfo>> order = new ArrayList<>(move);
+			Collections.shuffle(order, random);
+			for(List<FlightInfo> rotation : order) {
+				allocator.allocate(rotation);
+			}
+			matched &= compare(name + " move " + (m + 1), evaluator.getScore(), new QualityScoreCalculator(aircraft, crew, passengers, schedule).calculateQualityScore());
+		}
+		return matched;
+	}
+
+	private static boolean compare(String what, long evaluated, long calculated) {
+		boolean matched = evaluated == calculated;
+		System.out.println(what + ": evaluator " + evaluated + ", calculator " + calculated + (matched ? "" : "  MISMATCH"));
+		return matched;
+	}
+}
@@ -0,0 +1,191 @@
+package solution;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import baseclasses.Aircraft;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.IScheduler;
+import baseclasses.Route;
+import baseclasses.Schedule;
+
+/**
+ * The RollingHorizonScheduler schedules a long horizon a window of days at a time. Each window is allocated
+ * in a Schedule of its own, frozen, and handed on, so only one window is ever being worked on.
+ * All that is carried from one window to the next is the last flight each aircraft and crew member flew,
+ * which says where they are and when they landed, plus the legs of any rotation that started in one window
+ * and finishes in the next, so those go to the same aircraft and crew.
+ * Every flight belongs to the window it departs in, so the frozen windows between them cover the horizon exactly once.
+ */
+public class RollingHorizonScheduler implements IScheduler {
+
+	//how many days go in each window, by default
+	public static final int DEFAULT_WINDOW_DAYS = 7;
+
+	//how far past the end of its window a rotation that starts in the window can run
+	private static final int WINDOW_OVERRUN_DAYS = (int) (RotationBuilder.MAX_GROUND_TIME.toDays() * RotationBuilder.MAX_LEGS);
+
+	private final int windowDays;
+
+	/**
+	 * Creates a scheduler with week-long windows
+	 */
+	public RollingHorizonScheduler() {
+		this(DEFAULT_WINDOW_DAYS);
+	}
+
+	/**
+	 * Creates a scheduler with the given window length
+	 * @param windowDays how many days go in each window
+	 * @throws IllegalArgumentException if it is less than 1
+	 */
+	public RollingHorizonScheduler(int windowDays) {
+		if(windowDays < 1) {
+			throw new IllegalArgumentException("Window length must be at least 1");
+		}
+		this.windowDays = windowDays;
+	}
+
+	/**
+	 * Generates a schedule, providing you with ready-loaded DAO objects to get your data from.
+	 * The windows are copied into one Schedule over the whole horizon as they are frozen, so use
+	 * schedule() instead to keep only one window in memory at a time
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @return The generated schedule - which must happen inside 2 minutes
+	 */
+	@Override
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+		Schedule schedule = new Schedule(routeDAO, startDate, endDate);
+		Map<Route, Map<LocalDateTime, FlightInfo>> flights = index(schedule.getRemainingAllocations());
+		RotationAllocator allocator = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbersDAO, schedule);
+
+		schedule(aircraftDAO, crewDAO, routeDAO, passengerNumbersDAO, startDate, endDate, window -> {
+			for(FlightInfo f : window.getCompletedAllocations()) {
+				FlightInfo copy = find(flights, f);
+				if(copy != null) {
+					allocator.allocate(Collections.singletonList(copy), new RotationAllocator.Assignment(window, f));
+				}
+			}
+		});
+		return schedule;
+	}
+
+	/**
+	 * Schedules a horizon a window at a time, handing on each window once it is frozen
+	 * @param aircraftDAO the DAO for the aircraft to be used when scheduling
+	 * @param crewDAO the DAO for the crew to be used when scheduling
+	 * @param routeDAO the DAO to use for routes when scheduling
+	 * @param passengerNumbersDAO the DAO to use for passenger numbers when scheduling
+	 * @param startDate the start of the scheduling horizon
+	 * @param endDate the end of the scheduling horizon
+	 * @param frozen given each window's Schedule in turn, holding just the flights that depart in that window
+	 */
+	public void schedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate, Consumer<Schedule> frozen) {
+		//the end state of every aircraft and crew member, as of the last window frozen
+		Map<Aircraft, FlightInfo> aircraftLast = new IdentityHashMap<>();
+		Map<Crew, FlightInfo> crewLast = new IdentityHashMap<>();
+		//legs flown after the end of the last window, by rotations that started in it
+		Map<Route, Map<LocalDateTime, RotationAllocator.Assignment>> carried = new IdentityHashMap<>();
+
+		for(LocalDate windowStart = startDate; windowStart.isBefore(endDate); windowStart = windowStart.plusDays(windowDays)) {
+			LocalDate windowEnd = min(windowStart.plusDays(windowDays), endDate);
+			LocalDateTime cutOff = windowEnd.atStartOfDay();
+
+			Schedule work = new Schedule(routeDAO, windowStart, min(windowEnd.plusDays(WINDOW_OVERRUN_DAYS), endDate));
+			RotationAllocator allocator = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbersDAO, work);
+			for(Map.Entry<Aircraft, FlightInfo> e : aircraftLast.entrySet()) {
+				allocator.carryOver(e.getKey(), e.getValue());
+			}
+			for(Map.Entry<Crew, FlightInfo> e : crewLast.entrySet()) {
+				allocator.carryOver(e.getKey(), e.getValue());
+			}
+
+			//finish off the rotations the last window started, then start this window's own
+			for(FlightInfo f : new ArrayList<>(work.getRemainingAllocations())) {
+				Map<LocalDateTime, RotationAllocator.Assignment> sameRoute = carried.get(f.getFlight());
+				RotationAllocator.Assignment a = sameRoute == null ? null : sameRoute.get(f.getDepartureDateTime());
+				if(a != null) {
+					allocator.allocate(Collections.singletonList(f), a);
+				}
+			}
+			for(List<FlightInfo> rotation : new RotationBuilder(new ArrayList<>(work.getRemainingAllocations())).build()) {
+				if(rotation.get(0).getDepartureDateTime().isBefore(cutOff)) {
+					allocator.allocate(rotation);
+				}
+			}
+
+			//freeze the flights departing in this window, and carry the rest forward
+			Schedule window = new Schedule(routeDAO, windowStart, windowEnd);
+			Map<Route, Map<LocalDateTime, FlightInfo>> windowFlights = index(window.getRemainingAllocations());
+			RotationAllocator freezer = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbersDAO, window);
+			carried.clear();
+			for(FlightInfo f : work.getCompletedAllocations()) {
+				RotationAllocator.Assignment a = new RotationAllocator.Assignment(work, f);
+				if(f.getDepartureDateTime().isBefore(cutOff)) {
+					FlightInfo copy = find(windowFlights, f);
+					if(copy != null) {
+						freezer.allocate(Collections.singletonList(copy), a);
+						remember(aircraftLast, a.aircraft, copy);
+						for(Crew c : a.crew()) {
+							remember(crewLast, c, copy);
+						}
+					}
+				}
+				else {
+					carried.computeIfAbsent(f.getFlight(), k -> new HashMap<>()).put(f.getDepartureDateTime(), a);
+				}
+			}
+			frozen.accept(window);
+		}
+	}
+
+	/**
+	 * Records a flight as a resource's last, if it lands later than the one recorded already
+	 */
+	private static <R> void remember(Map<R, FlightInfo> last, R resource, FlightInfo f) {
+		FlightInfo previous = last.get(resource);
+		if(previous == null || previous.getLandingDateTime().isBefore(f.getLandingDateTime())) {
+			last.put(resource, f);
+		}
+	}
+
+	/**
+	 * Indexes flights by route and departure time, so the same flight can be found in another Schedule
+	 */
+	private static Map<Route, Map<LocalDateTime, FlightInfo>> index(List<FlightInfo> flights) {
+		Map<Route, Map<LocalDateTime, FlightInfo>> index = new IdentityHashMap<>();
+		for(FlightInfo f : flights) {
+			index.computeIfAbsent(f.getFlight(), k -> new HashMap<>()).put(f.getDepartureDateTime(), f);
+		}
+		return index;
+	}
+
+	/**
+	 * Finds the copy of a flight in an index made by index()
+	 * @return the copy, or null if the index doesn't have it
+	 */
+	private static FlightInfo find(Map<Route, Map<LocalDateTime, FlightInfo>> index, FlightInfo f) {
+		Map<LocalDateTime, FlightInfo> sameRoute = index.get(f.getFlight());
+		return sameRoute == null ? null : sameRoute.get(f.getDepartureDateTime());
+	}
+
+	private static LocalDate min(LocalDate a, LocalDate b) {
+		return a.isBefore(b) ? a : b;
+	}
+}
@@ -0,0 +1,569 @@
+package solution;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.DoubleBookedException;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.InvalidAllocationException;
+import baseclasses.Pilot;
+import baseclasses.Pilot.Rank;
+import baseclasses.Schedule;
+
+/**
+ * The RotationAllocator allocates an aircraft and crew to each rotation it's given, within one Schedule.
+ * Alongside the Schedule it keeps an AvailabilityTimeline for the aircraft and one for the crew, so
+ * checking whether a resource is free doesn't mean walking through everything it has been allocated.
+ */
+class RotationAllocator {
+
+	//the rest crew need between duties
+	static final Duration MIN_REST = Duration.ofHours(12);
+
+	private final IAircraftDAO aircraftDAO;
+	private final ICrewDAO crewDAO;
+	private final IPassengerNumbersDAO passengerNumbersDAO;
+	private final Schedule schedule;
+
+	//What every aircraft and crew member is busy on, kept in step with the schedule
+	final AvailabilityTimeline<Aircraft> aircraftTimeline = new AvailabilityTimeline<>();
+	final AvailabilityTimeline<Crew> crewTimeline = new AvailabilityTimeline<>();
+
+	//Who is free next, by base, type rating and rank
+	private final CrewPool crewPool;
+
+	//Breaks ties between equally good aircraft and crew, or null to always take the first
+	private Random tieBreak;
+
+	//Whether to look for crew with a gap in their bookings before asking the pool
+	private boolean fillGaps;
+
+	//Kept up to date with every flight completed or unallocated, if there is one
+	private QualityEvaluator evaluator;
+
+	//Where the time goes, or DISABLED to record nothing
+	private SchedulerMetrics metrics = SchedulerMetrics.DISABLED;
+
+	//Told about every aircraft tried, for debugging
+	private TraceSink trace = TraceSink.OFF;
+
+	/**
+	 * Creates an allocator for a schedule with nothing yet allocated
+	 * @param aircraftDAO the aircraft to choose from
+	 * @param crewDAO the crew to choose from
+	 * @param passengerNumbersDAO the passenger forecasts used to size the aircraft
+	 * @param schedule the schedule to allocate into
+	 */
+	RotationAllocator(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IPassengerNumbersDAO passengerNumbersDAO, Schedule schedule) {
+		this.aircraftDAO = aircraftDAO;
+		this.crewDAO = crewDAO;
+		this.passengerNumbersDAO = passengerNumbersDAO;
+		this.schedule = schedule;
+		this.crewPool = new CrewPool(crewDAO);
+	}
+
+	/**
+	 * Sets how ties between equally good aircraft, and between crew found by searching rather than
+	 * from the pool, are broken
+	 * @param tieBreak a source of random choices, or null to always take the first
+	 */
+	void setTieBreak(Random tieBreak) {
+		this.tieBreak = tieBreak;
+	}
+
+	/**
+	 * Sets an evaluator to tell about every flight this completes or unallocates, so it always has the
+	 * schedule's current score
+	 * @param evaluator the evaluator, which should already have the schedule's completed flights, or null for none
+	 */
+	void setEvaluator(QualityEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Sets the metrics to record each phase of allocating a rotation in
+	 * @param metrics the metrics, or null to record nothing
+	 */
+	void setMetrics(SchedulerMetrics metrics) {
+		this.metrics = metrics == null ? SchedulerMetrics.DISABLED : metrics;
+	}
+
+	/**
+	 * Sets where to trace each aircraft tried on each leg
+	 * @param trace the sink, or null to trace nothing
+	 */
+	void setTrace(TraceSink trace) {
+		this.trace = trace == null ? TraceSink.OFF : trace;
+	}
+
+	/**
+	 * Sets whether crew are searched for anyone free on every leg before the pool is asked. The pool only
+	 * knows when crew are next free, which is all that matters while rotations are allocated in order of
+	 * departure, but rotations allocated out of order, e.g. after unAllocate(), can use crew with a gap in their bookings
+	 * @param fillGaps true to search first, false to ask the pool first
+	 */
+	void setFillGaps(boolean fillGaps) {
+		this.fillGaps = fillGaps;
+	}
+
+	/**
+	 * Books an aircraft on the last flight it flew before this schedule's horizon, e.g. in an earlier window
+	 * of a rolling horizon, so it isn't given anything that departs before that flight lands
+	 * @param a the aircraft
+	 * @param last the last flight it flew, from whichever schedule it was allocated in
+	 */
+	void carryOver(Aircraft a, FlightInfo last) {
+		if(aircraftTimeline.isFree(a, last)) {
+			aircraftTimeline.book(a, last);
+		}
+	}
+
+	/**
+	 * Books a crew member on the last flight they flew before this schedule's horizon, so they aren't
+	 * given anything that departs before that flight lands, and aren't taken from the pool until then
+	 * @param c the crew member
+	 * @param last the last flight they flew, from whichever schedule it was allocated in
+	 */
+	void carryOver(Crew c, FlightInfo last) {
+		if(crewTimeline.isFree(c, last)) {
+			crewTimeline.book(c, last);
+		}
+		returnToPool(c, last.getLandingDateTime());
+	}
+
+	/**
+	 * Allocates one aircraft and one crew to every leg of a rotation, and completes the legs that are valid
+	 * @param rotation the legs of the rotation, in the order they are flown
+	 * @return true if every leg was completed
+	 */
+	boolean allocate(List<FlightInfo> rotation) {
+		long started = metrics.start();
+
+		//maximum number of required passengers over the legs, to find the biggest plane needed
+		int max = 0;
+		for(FlightInfo leg : rotation) {
+			int reqPerHop = passengerNumbersDAO.getPassengerNumbersFor(leg.getFlight().getFlightNumber(), leg.getDepartureDateTime().toLocalDate());
+			if(reqPerHop > max) {
+				max = reqPerHop;
+			}
+		}
+		long phase = metrics.start();
+		metrics.record(SchedulerMetrics.Phase.PASSENGER_LOOKUP, started);
+
+		//how many passengers needed? plane to match! Get rid of any planes that are busy on any leg
+		List<Aircraft> useable = freeAircraft(aircraftDAO.findAircraftBySeats(max), rotation);
+		if(useable.isEmpty()) {
+			//nothing big enough is free, so take whatever is, biggest first
+			List<Aircraft> anySize = aircraftDAO.findAircraftBySeats(0);
+			List<Aircraft> biggestFirst = new ArrayList<>();
+			for(int q = anySize.size() - 1; q >= 0; q--) {
+				biggestFirst.add(anySize.get(q));
+			}
+			useable = freeAircraft(biggestFirst, rotation);
+		}
+		if(tieBreak != null && useable.size() > 1) {
+			//any of the aircraft the same size as the best fit would do just as well
+			int sameSize = 1;
+			while(sameSize < useable.size() && useable.get(sameSize).getSeats() == useable.get(0).getSeats()) {
+				sameSize++;
+			}
+			Collections.swap(useable, 0, tieBreak.nextInt(sameSize));
+		}
+
+		boolean allCompleted = true;
+		List<FlightInfo> flown = new ArrayList<>();
+		for(FlightInfo leg : rotation) {
+			for(int l = 0; l < useable.size(); l++) {
+				trace.aircraftTried(leg, l);
+				try {
+					metrics.conflictCheck();
+					schedule.allocateAircraftTo(useable.get(l), leg);
+					aircraftTimeline.book(useable.get(l), leg);
+					break;
+				}
+				catch(DoubleBookedException dbe) {
+					//try the next one
+					metrics.doubleBooking();
+				}
+			}
+
+			if(schedule.getAircraftFor(leg) == null) {
+				//no aircraft free for this leg, so it stays unallocated
+				allCompleted = false;
+			}
+			else {
+				flown.add(leg);
+			}
+		}
+		metrics.record(SchedulerMetrics.Phase.AIRCRAFT_SELECTION, phase);
+		if(flown.isEmpty()) {
+			metrics.recordLegs(rotation.size(), started);
+			return false;
+		}
+
+		allocateCrew(flown);
+
+		phase = metrics.start();
+		for(FlightInfo leg : flown) {
+			//complete flight path
+			if(!complete(leg)) {
+				allCompleted = false;
+			}
+		}
+		metrics.record(SchedulerMetrics.Phase.COMPLETION, phase);
+		metrics.recordLegs(rotation.size(), started);
+		return allCompleted;
+	}
+
+	/**
+	 * Allocates a rotation to an aircraft and crew chosen for it elsewhere, e.g. by an allocator working
+	 * on one part of the horizon. If the assignment is incomplete, or any of it is no longer free on
+	 * every leg, the rotation is allocated from scratch instead
+	 * @param rotation the legs of the rotation, in the order they are flown
+	 * @param assignment the aircraft and crew to use, or null if there isn't one
+	 * @return true if every leg was completed
+	 */
+	boolean allocate(List<FlightInfo> rotation, Assignment assignment) {
+		if(assignment == null || !assignment.isComplete() || !aircraftTimeline.isFree(assignment.aircraft, rotation)) {
+			return allocate(rotation);
+		}
+		for(Crew c : assignment.crew()) {
+			if(!crewTimeline.isFree(c, rotation)) {
+				return allocate(rotation);
+			}
+		}
+
+		long started = metrics.start();
+		for(FlightInfo leg : rotation) {
+			try {
+				metrics.conflictCheck();
+				schedule.allocateAircraftTo(assignment.aircraft, leg);
+				aircraftTimeline.book(assignment.aircraft, leg);
+			}
+			catch(DoubleBookedException dbe) {
+				//already on this flight
+				metrics.doubleBooking();
+			}
+		}
+		long phase = metrics.start();
+		metrics.record(SchedulerMetrics.Phase.AIRCRAFT_SELECTION, started);
+		for(CabinCrew c : assignment.cabinCrew) {
+			allocateToLegs(c, null, rotation);
+		}
+		long pilots = metrics.start();
+		metrics.record(SchedulerMetrics.Phase.CABIN_CREW, phase);
+		allocateToLegs(assignment.captain, Rank.CAPTAIN, rotation);
+		allocateToLegs(assignment.firstOfficer, Rank.FIRST_OFFICER, rotation);
+		metrics.record(SchedulerMetrics.Phase.PILOTS, pilots);
+
+		LocalDateTime landing = rotation.get(rotation.size() - 1).getLandingDateTime();
+		for(Crew c : assignment.crew()) {
+			returnToPool(c, landing);
+		}
+
+		phase = metrics.start();
+		boolean allCompleted = true;
+		for(FlightInfo leg : rotation) {
+			if(!complete(leg)) {
+				allCompleted = false;
+			}
+		}
+		metrics.record(SchedulerMetrics.Phase.COMPLETION, phase);
+		metrics.recordLegs(rotation.size(), started);
+		return allCompleted;
+	}
+
+	/**
+	 * Completes a leg if it has everything it needs
+	 * @return true if the leg is completed, whether now or already
+	 */
+	private boolean complete(FlightInfo leg) {
+		if(!schedule.isValid(leg)) {
+			return false;
+		}
+		try {
+			schedule.completeAllocationFor(leg);
+			if(evaluator != null) {
+				evaluator.add(leg, schedule);
+			}
+		}
+		catch(InvalidAllocationException iae) {
+			//already completed
+			metrics.invalidAllocation();
+		}
+		return true;
+	}
+
+	/**
+	 * Filters a list of aircraft down to those free on every leg of the rotation, keeping their order
+	 */
+	private List<Aircraft> freeAircraft(List<Aircraft> planes, List<FlightInfo> rotation) {
+		List<Aircraft> useable = new ArrayList<>();
+		for(Aircraft plane : planes) {
+			if(aircraftTimeline.isFree(plane, rotation)) {
+				useable.add(plane);
+			}
+		}
+		return useable;
+	}
+
+	/**
+	 * Takes the aircraft and crew off every leg of a rotation and puts its legs back into the schedule's
+	 * remaining allocations, so it can be allocated again
+	 * @param rotation the legs of the rotation
+	 */
+	void unAllocate(List<FlightInfo> rotation) {
+		long started = metrics.start();
+		List<Pilot> firstOfficers = new ArrayList<>();
+		for(FlightInfo leg : rotation) {
+			Aircraft plane = schedule.getAircraftFor(leg);
+			if(plane != null) {
+				aircraftTimeline.release(plane, leg);
+			}
+			for(CabinCrew c : schedule.getCabinCrewOf(leg)) {
+				crewTimeline.release(c, leg);
+			}
+			Pilot captain = schedule.getCaptainOf(leg);
+			if(captain != null) {
+				crewTimeline.release(captain, leg);
+			}
+			Pilot firstOfficer = schedule.getFirstOfficerOf(leg);
+			if(firstOfficer != null) {
+				crewTimeline.release(firstOfficer, leg);
+				firstOfficers.add(firstOfficer);
+			}
+			if(evaluator != null) {
+				evaluator.remove(leg);
+			}
+			schedule.unAllocate(leg);
+		}
+
+		//Schedule.unAllocate() forgets every flight a first officer is on, not just the one
+		//being unallocated, so give them back the ones they're still flying
+		for(Pilot firstOfficer : firstOfficers) {
+			for(FlightInfo f : crewTimeline.bookings(firstOfficer)) {
+				if(schedule.getFirstOfficerOf(f) == firstOfficer && !schedule.getCompletedAllocationsFor(firstOfficer).contains(f)) {
+					try {
+						metrics.conflictCheck();
+						schedule.allocateFirstOfficerTo(firstOfficer, f);
+					}
+					catch(DoubleBookedException dbe) {
+						//can't happen, they were already flying it
+						metrics.doubleBooking();
+					}
+				}
+			}
+		}
+		metrics.record(SchedulerMetrics.Phase.UNALLOCATION, started);
+	}
+
+	/**
+	 * Takes one crew from the pool for the whole rotation: enough cabin crew for the aircraft, a captain
+	 * and a first officer, each free on every leg. They go back into the pool once the last leg lands.
+	 * If nobody in the pool is free, or fillGaps is set, the crew are searched for anyone free on every leg instead
+	 */
+	private void allocateCrew(List<FlightInfo> legs) {
+		FlightInfo first = legs.get(0);
+		Aircraft plane = schedule.getAircraftFor(first);
+		String base = first.getFlight().getDepartureAirportCode();
+		String typeCode = plane.getTypeCode();
+		LocalDateTime departure = first.getDepartureDateTime();
+		LocalDateTime landing = legs.get(legs.size() - 1).getLandingDateTime();
+		Predicate<Crew> freeForRotation = c -> crewTimeline.isFree(c, legs);
+		//when searching, rather than asking the pool, look for someone rested either side first
+		Predicate<Crew> rested = c -> crewTimeline.isFree(c, departure.minus(MIN_REST), landing.plus(MIN_REST));
+
+		long started = metrics.start();
+		List<Crew> taken = new ArrayList<>();
+		for(int k = 0; k < plane.getCabinCrewRequired(); k++) {
+			CabinCrew c = fillGaps ? null : crewPool.takeCabinCrew(base, typeCode, departure, freeForRotation);
+			if(c == null) {
+				c = findFreeCabinCrew(base, typeCode, rested);
+			}
+			if(c == null) {
+				c = findFreeCabinCrew(base, typeCode, freeForRotation);
+			}
+			if(c == null) {
+				break;
+			}
+			taken.add(c);
+			allocateToLegs(c, null, legs);
+		}
+
+		long pilots = metrics.start();
+		metrics.record(SchedulerMetrics.Phase.CABIN_CREW, started);
+
+		//captain first, so a first officer seat can't use up the only captain who's free
+		Pilot captain = fillGaps ? null : crewPool.takePilot(Rank.CAPTAIN, base, typeCode, departure, freeForRotation);
+		if(captain == null) {
+			captain = findFreePilot(Rank.CAPTAIN, base, typeCode, rested);
+		}
+		if(captain == null) {
+			captain = findFreePilot(Rank.CAPTAIN, base, typeCode, freeForRotation);
+		}
+		if(captain != null) {
+			taken.add(captain);
+			allocateToLegs(captain, Rank.CAPTAIN, legs);
+		}
+		Pilot firstOfficer = fillGaps ? null : crewPool.takePilot(Rank.FIRST_OFFICER, base, typeCode, departure, freeForRotation);
+		if(firstOfficer == null) {
+			firstOfficer = findFreePilot(Rank.FIRST_OFFICER, base, typeCode, rested);
+		}
+		if(firstOfficer == null) {
+			firstOfficer = findFreePilot(Rank.FIRST_OFFICER, base, typeCode, freeForRotation);
+		}
+		if(firstOfficer != null) {
+			taken.add(firstOfficer);
+			allocateToLegs(firstOfficer, Rank.FIRST_OFFICER, legs);
+		}
+
+		for(Crew c : taken) {
+			returnToPool(c, landing);
+		}
+		metrics.record(SchedulerMetrics.Phase.PILOTS, pilots);
+	}
+
+	/**
+	 * Puts a crew member back in the pool once a rotation lands. The pool only knows when crew are next
+	 * free, so that is only ever moved later, never back to fill a gap
+	 */
+	private void returnToPool(Crew c, LocalDateTime landing) {
+		LocalDateTime freeFrom = crewPool.freeFrom(c);
+		if(freeFrom == null || freeFrom.isBefore(landing)) {
+			crewPool.release(c, landing);
+		}
+	}
+
+	/**
+	 * Finds a cabin crew member who is free, preferring the rotation's base and aircraft type
+	 */
+	private CabinCrew findFreeCabinCrew(String base, String typeCode, Predicate<Crew> free) {
+		CabinCrew c = firstFree(crewDAO.findCabinCrewByHomeBaseAndTypeRating(typeCode, base), free);
+		if(c == null) {
+			c = firstFree(crewDAO.findCabinCrewByTypeRating(typeCode), free);
+		}
+		if(c == null) {
+			c = firstFree(crewDAO.getAllCabinCrew(), free);
+		}
+		return c;
+	}
+
+	/**
+	 * Finds a pilot who is free, preferring the right rank, then the rotation's base and aircraft type
+	 */
+	private Pilot findFreePilot(Rank rank, String base, String typeCode, Predicate<Crew> free) {
+		Predicate<Crew> rightRank = c -> ((Pilot) c).getRank() == rank && free.test(c);
+		Pilot p = firstFree(crewDAO.findPilotsByHomeBaseAndTypeRating(typeCode, base), rightRank);
+		if(p == null) {
+			p = firstFree(crewDAO.findPilotsByTypeRating(typeCode), rightRank);
+		}
+		if(p == null) {
+			p = firstFree(crewDAO.findPilotsByTypeRating(typeCode), free);
+		}
+		if(p == null) {
+			p = firstFree(crewDAO.getAllPilots(), rightRank);
+		}
+		if(p == null) {
+			p = firstFree(crewDAO.getAllPilots(), free);
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the first candidate who is free, starting from a random place in the list if there's a tie break
+	 */
+	private <T extends Crew> T firstFree(List<T> candidates, Predicate<Crew> free) {
+		int offset = tieBreak == null || candidates.isEmpty() ? 0 : tieBreak.nextInt(candidates.size());
+		for(int i = 0; i < candidates.size(); i++) {
+			T c = candidates.get((offset + i) % candidates.size());
+			if(free.test(c)) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Allocates a crew member to every leg, in the given seat, and books them on the crew timeline
+	 * @param seat the seat for a pilot, or null for cabin crew
+	 */
+	private void allocateToLegs(Crew c, Rank seat, List<FlightInfo> legs) {
+		for(FlightInfo leg : legs) {
+			try {
+				metrics.conflictCheck();
+				if(seat == Rank.CAPTAIN) {
+					schedule.allocateCaptainTo((Pilot) c, leg);
+				}
+				else if(seat == Rank.FIRST_OFFICER) {
+					schedule.allocateFirstOfficerTo((Pilot) c, leg);
+				}
+				else {
+					schedule.allocateCabinCrewTo((CabinCrew) c, leg);
+				}
+				crewTimeline.book(c, leg);
+			}
+			catch(DoubleBookedException dbe) {
+				//already on this flight
+				metrics.doubleBooking();
+			}
+		}
+	}
+
+	/**
+	 * The aircraft and crew a rotation was allocated, taken from one Schedule so they can be
+	 * allocated to the same rotation in another
+	 */
+	static class Assignment {
+		final Aircraft aircraft;
+		final List<CabinCrew> cabinCrew;
+		final Pilot captain;
+		final Pilot firstOfficer;
+
+		/**
+		 * Reads the assignment of a rotation's first leg from a schedule
+		 * @param schedule the schedule the rotation was allocated in
+		 * @param firstLeg the first leg of the rotation
+		 */
+		Assignment(Schedule schedule, FlightInfo firstLeg) {
+			this.aircraft = schedule.getAircraftFor(firstLeg);
+			this.cabinCrew = schedule.getCabinCrewOf(firstLeg);
+			this.captain = schedule.getCaptainOf(firstLeg);
+			this.firstOfficer = schedule.getFirstOfficerOf(firstLeg);
+		}
+
+		/**
+		 * Checks whether this has an aircraft and a full crew for it
+		 */
+		boolean isComplete() {
+			return aircraft != null && captain != null && firstOfficer != null && captain != firstOfficer
+					&& cabinCrew != null && cabinCrew.size() >= aircraft.getCabinCrewRequired();
+		}
+
+		/**
+		 * Returns everyone in this assignment, pilots and cabin crew
+		 */
+		List<Crew> crew() {
+			List<Crew> crew = new ArrayList<>();
+			if(cabinCrew != null) {
+				crew.addAll(cabinCrew);
+			}
+			if(captain != null) {
+				crew.add(captain);
+			}
+			if(firstOfficer != null) {
+				crew.add(firstOfficer);
+			}
+			return crew;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package solution;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import baseclasses.FlightInfo;
+
+/**
+ * The RotationBuilder groups the flights in a scheduling horizon into rotations. A rotation starts
+ * with a flight out of a base and follows on with the flights that bring the aircraft back there,
+ * e.g. MAN-AYT then AYT-MAN. The flights are indexed once, by flight number and by departure
+ * airport, each ordered by departure time, so finding the next leg is a map lookup rather than a scan.
+ */
+class RotationBuilder {
+
+	//the most legs a rotation can have before we give up on getting back to base
+	static final int MAX_LEGS = 4;
+
+	//how long an aircraft can wait on the ground for its next leg
+	static final Duration MAX_GROUND_TIME = Duration.ofHours(48);
+
+	//Flights not yet put into a rotation, in departure order
+	private final TreeMap<LocalDateTime, List<FlightInfo>> byDeparture = new TreeMap<>();
+	private final Map<Integer, TreeMap<LocalDateTime, List<FlightInfo>>> byFlightNumber = new HashMap<>();
+	private final Map<String, TreeMap<LocalDateTime, List<FlightInfo>>> byDepartureAirport = new HashMap<>();
+
+	/**
+	 * Indexes the flights of a horizon, ready to build rotations from
+	 * @param flights the flights to group into rotations, usually a Schedule's remaining allocations
+	 */
+	RotationBuilder(List<FlightInfo> flights) {
+		for(FlightInfo f : flights) {
+			add(byDeparture, f);
+			add(byFlightNumber.computeIfAbsent(f.getFlight().getFlightNumber(), k -> new TreeMap<>()), f);
+			add(byDepartureAirport.computeIfAbsent(f.getFlight().getDepartureAirportCode(), k -> new TreeMap<>()), f);
+		}
+	}
+
+	/**
+	 * Groups every flight into exactly one rotation
+	 * @return the rotations, in order of their first departure. Each rotation's legs are in the order they're flown
+	 */
+	List<List<FlightInfo>> build() {
+		List<List<FlightInfo>> rotations = new ArrayList<>();
+		while(!byDeparture.isEmpty()) {
+			FlightInfo first = byDeparture.firstEntry().getValue().get(0);
+			rotations.add(buildFrom(first));
+		}
+		return rotations;
+	}
+
+	/**
+	 * Builds the rotation starting with the given flight, removing its legs from the indexes
+	 */
+	private List<FlightInfo> buildFrom(FlightInfo first) {
+		String base = first.getFlight().getDepartureAirportCode();
+		List<FlightInfo> rotation = new ArrayList<>();
+		FlightInfo leg = first;
+
+		while(leg != null) {
+			rotation.add(leg);
+			remove(leg);
+			if(leg.getFlight().getArrivalAirportCode().equals(base) || rotation.size() == MAX_LEGS) {
+				break;
+			}
+			leg = nextLeg(leg, base);
+		}
+		return rotation;
+	}
+
+	/**
+	 * Finds the flight that should follow on from a leg: its partner flight number (one either side) if
+	 * there is one from the right airport, otherwise the first flight from that airport back to base,
+	 * otherwise the first flight from that airport at all
+	 * @return the next leg, or null if nothing leaves the leg's arrival airport in time
+	 */
+	private FlightInfo nextLeg(FlightInfo leg, String base) {
+		String airport = leg.getFlight().getArrivalAirportCode();
+		LocalDateTime from = leg.getLandingDateTime();
+		LocalDateTime to = from.plus(MAX_GROUND_TIME);
+		int flightNumber = leg.getFlight().getFlightNumber();
+
+		FlightInfo partner = earliestPartner(flightNumber + 1, airport, from, to);
+		FlightInfo otherPartner = earliestPartner(flightNumber - 1, airport, from, to);
+		if(partner == null || (otherPartner != null && otherPartner.compareTo(partner) < 0)) {
+			partner = otherPartner;
+		}
+		if(partner != null) {
+			return partner;
+		}
+
+		TreeMap<LocalDateTime, List<FlightInfo>> departing = byDepartureAirport.get(airport);
+		if(departing == null) {
+			return null;
+		}
+		FlightInfo anywhere = null;
+		for(List<FlightInfo> atTime : departing.subMap(from, true, to, true).values()) {
+			for(FlightInfo f : atTime) {
+				if(f.getFlight().getArrivalAirportCode().equals(base)) {
+					return f;
+				}
+				if(anywhere == null) {
+					anywhere = f;
+				}
+			}
+		}
+		return anywhere;
+	}
+
+	/**
+	 * Finds the earliest flight with the given number leaving the given airport between two times
+	 */
+	private FlightInfo earliestPartner(int flightNumber, String airport, LocalDateTime from, LocalDateTime to) {
+		TreeMap<LocalDateTime, List<FlightInfo>> withNumber = byFlightNumber.get(flightNumber);
+		if(withNumber == null) {
+			return null;
+		}
+		for(List<FlightInfo> atTime : withNumber.subMap(from, true, to, true).values()) {
+			for(FlightInfo f : atTime) {
+				if(f.getFlight().getDepartureAirportCode().equals(airport)) {
+					return f;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void add(TreeMap<LocalDateTime, List<FlightInfo>> index, FlightInfo f) {
+		index.computeIfAbsent(f.getDepartureDateTime(), k -> new ArrayList<>(1)).add(f);
+	}
+
+	private void remove(FlightInfo f) {
+		remove(byDeparture, f);
+		remove(byFlightNumber.get(f.getFlight().getFlightNumber()), f);
+		remove(byDepartureAirport.get(f.getFlight().getDepartureAirportCode()), f);
+	}
+
+	private static void remove(TreeMap<LocalDateTime, List<FlightInfo>> index, FlightInfo f) {
+		List<FlightInfo> atTime = index == null ? null : index.get(f.getDepartureDateTime());
+		if(atTime == null) {
+			return;
+		}
+		//FlightInfo doesn't override equals(), so look for this exact object
+		for(Iterator<FlightInfo> it = atTime.iterator(); it.hasNext(); ) {
+			if(it.next() == f) {
+				it.remove();
+				break;
+			}
+		}
+		if(atTime.isEmpty()) {
+			index.remove(f.getDepartureDateTime());
+		}
+	}
+}
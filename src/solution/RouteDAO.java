@@ -1,25 +1,25 @@
 package solution;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.w3c.dom.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import baseclasses.DataLoadingException;
 import baseclasses.IRouteDAO;
@@ -31,40 +31,114 @@ import baseclasses.Route;
  */
 public class RouteDAO implements IRouteDAO {
 	List<Route> routes = new ArrayList<>(); 
+	
+	//The three letter day names used in the route files, e.g. "Tue", mapped to their day
+	static final Map<String, DayOfWeek> DAY_NAMES = new HashMap<>();
+	static {
+		for(DayOfWeek day : DayOfWeek.values()) {
+			DAY_NAMES.put(day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), day);
+		}
+	}
+	
+	//Buckets built as routes are loaded. The views hand out unmodifiable copies of them, made again by publish()
+	//whenever routes are added or reset, so a list someone already has never changes under them
+	Map<DayOfWeek, List<Route>> byDay = new EnumMap<>(DayOfWeek.class);
+	Map<DayOfWeek, List<Route>> byDayView = new EnumMap<>(DayOfWeek.class);
+	Map<String, Map<DayOfWeek, List<Route>>> byAirportAndDay = new HashMap<>();
+	Map<String, Map<DayOfWeek, List<Route>>> byAirportAndDayView = new HashMap<>();
+	Map<String, List<Route>> byAirport = new HashMap<>();
+	
+	/**
+	 * Adds a route that didn't come from a file, e.g. when a route is added to an existing schedule
+	 * @param r the route to add
+	 */
+	void add(Route r) {
+		addAll(Collections.singletonList(r));
+	}
+	
+	/**
+	 * Adds routes that didn't come from a file, e.g. when a schedule is being repaired
+	 * @param added the routes to add
+	 */
+	void addAll(List<Route> added) {
+		for(Route r : added) {
+			routes.add(r);
+			index(r);
+		}
+		publish();
+	}
+	
+	/**
+	 * Adds a newly loaded route to the day and departure airport buckets
+	 * @param r the route to index
+	 */
+	private void index(Route r) {
+		byAirport.computeIfAbsent(r.getDepartureAirportCode(), k -> new ArrayList<>()).add(r);
+		
+		DayOfWeek day = DAY_NAMES.get(r.getDayOfWeek());
+		if(day == null) {
+			//not a day we recognise, so no day-based search can find it
+			return;
+		}
+		byDay.computeIfAbsent(day, k -> new ArrayList<>()).add(r);
+		byAirportAndDay.computeIfAbsent(r.getDepartureAirportCode(), k -> new EnumMap<>(DayOfWeek.class))
+				.computeIfAbsent(day, k -> new ArrayList<>()).add(r);
+	}
+	
+	/**
+	 * Makes the views again from the buckets as they are now
+	 */
+	private void publish() {
+		byDayView.clear();
+		copy(byDay, byDayView);
+		byAirportAndDayView.clear();
+		for(Map.Entry<String, Map<DayOfWeek, List<Route>>> e : byAirportAndDay.entrySet()) {
+			copy(e.getValue(), byAirportAndDayView.computeIfAbsent(e.getKey(), k -> new EnumMap<>(DayOfWeek.class)));
+		}
+	}
+	
+	/**
+	 * Puts an unmodifiable copy of each day's bucket into the views
+	 */
+	private static void copy(Map<DayOfWeek, List<Route>> buckets, Map<DayOfWeek, List<Route>> views) {
+		for(Map.Entry<DayOfWeek, List<Route>> e : buckets.entrySet()) {
+			views.put(e.getKey(), Collections.unmodifiableList(new ArrayList<>(e.getValue())));
+		}
+	}
+	
+	/**
+	 * Returns the copy of a day's bucket, or an empty list if there isn't one
+	 */
+	private static List<Route> view(Map<DayOfWeek, List<Route>> views, DayOfWeek day) {
+		if(views == null || day == null) {
+			return Collections.emptyList();
+		}
+		List<Route> found = views.get(day);
+		if(found == null) {
+			return Collections.emptyList();
+		}
+		return found;
+	}
+	
 	/**
 	 * Finds all flights that depart on the specified day of the week
 	 * @param dayOfWeek A three letter day of the week, e.g. "Tue"
-	 * @return A list of all routes that depart on this day
+	 * @return A read-only list of all routes that depart on this day
 	 */
 	@Override   
 	public List<Route> findRoutesByDayOfWeek(String dayOfWeek) {
-		// TODO Auto-generated method stub
-		List<Route> byDayOfWeek = new ArrayList<>(); 
-		for(int i=0; i<routes.size(); i++) {
-			if(dayOfWeek.equals(routes.get(i).getDayOfWeek())) {
-				byDayOfWeek.add(routes.get(i));
-			}
-			 
-		}
-		return byDayOfWeek; 
+		return view(byDayView, DAY_NAMES.get(dayOfWeek)); 
 	}
 
 	/**
 	 * Finds all of the flights that depart from a specific airport on a specific day of the week
 	 * @param airportCode the three letter code of the airport to search for, e.g. "MAN"
 	 * @param dayOfWeek the three letter day of the week code to search for, e.g. "Tue"
-	 * @return A list of all routes from that airport on that day
+	 * @return A read-only list of all routes from that airport on that day
 	 */
 	@Override
 	public List<Route> findRoutesByDepartureAirportAndDay(String airportCode, String dayOfWeek) {
-		// TODO Auto-generated method stub
-		List<Route> portAndDay = new ArrayList<>(); 
-		for(int i=0; i<routes.size(); i++) {
-			if(airportCode.equals(routes.get(i).getDepartureAirportCode()) && dayOfWeek.equals(routes.get(i).getDayOfWeek())) {
-				portAndDay.add(routes.get(i)); 
-			}
-		}
-		return portAndDay; 
+		return view(byAirportAndDayView.get(airportCode), DAY_NAMES.get(dayOfWeek)); 
 	}
 
 	/**
@@ -74,35 +148,21 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesDepartingAirport(String airportCode) {
-		// TODO Auto-generated method stub
-		List<Route> depAir = new ArrayList<>(); 
-		for(int i=0; i<routes.size(); i++) {
-			if(airportCode.equals(routes.get(i).getDepartureAirportCode())) {
-				depAir.add(routes.get(i)); 
-			}
+		List<Route> depAir = byAirport.get(airportCode); 
+		if(depAir == null) {
+			return new ArrayList<>();
 		}
-		return depAir; 
+		return new ArrayList<>(depAir); 
 	}
 
 	/**
 	 * Finds all of the flights that depart on the specified date
 	 * @param date the date to search for
-	 * @return A list of all routes that depart on this date
+	 * @return A read-only list of all routes that depart on this date
 	 */
 	@Override
 	public List<Route> findRoutesbyDate(LocalDate date) {
-		List<Route> findByDate = new ArrayList<>(); 
-		String myDateString = date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.ENGLISH); 
-		
-		for(int i=0; i<routes.size(); i++){
-			
-			if(myDateString.equals(routes.get(i).getDayOfWeek())) {
-				
-				findByDate.add(routes.get(i)); 
-			}
-		}
-		
-		return findByDate; 
+		return view(byDayView, date.getDayOfWeek()); 
 	}
 
 	/**
@@ -134,77 +194,137 @@ public class RouteDAO implements IRouteDAO {
 
 	/**
 	 * Loads the route data from the specified file, adding them to the currently loaded routes
-	 * Multiple calls to this function, perhaps on different files, would thus be cumulative
+	 * Multiple calls to this function, perhaps on different files, would thus be cumulative.
+	 * If the file isn't well formed XML none of its routes are added; if a route has a bad or missing field,
+	 * the routes before it are added and the rest aren't
 	 * @param p A Path pointing to the file from which data could be loaded
 	 * @throws DataLoadingException if anything goes wrong. The exception's "cause" indicates the underlying exception
 	 */
 	@Override
 	public void loadRouteData(Path p) throws DataLoadingException {
-		// TODO Auto-generated method stub
-		DocumentBuilder docBuild; 
-		DocumentBuilderFactory fac = DocumentBuilderFactory.newInstance(); 
-		Document doc = null;
+		XMLInputFactory fac = XMLInputFactory.newInstance(); 
+		fac.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		
+		//Routes are read in one pass but only added once the whole file has been read, so a syntax error
+		//anywhere in it adds none of them
+		List<Route> loaded = new ArrayList<>();
+		DataLoadingException bad = null;
+		try(InputStream in = Files.newInputStream(p)) {
+			XMLStreamReader reader = fac.createXMLStreamReader(in);
+			try {
+				while(reader.hasNext()) {
+					if(reader.next() == XMLStreamConstants.START_ELEMENT && bad == null && reader.getLocalName().equals("Route")) {
+						try {
+							loaded.add(readRoute(reader));
+						}
+						catch(DataLoadingException e) {
+							//keep reading to the end, since a syntax error later on still means nothing is added
+							bad = e;
+						}
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		catch(XMLStreamException | IOException e) {
+			throw new DataLoadingException(e); 
+		}
+		
+		addAll(loaded);
+		if(bad != null) {
+			throw bad;
+		}
+	}
+	
+	/**
+	 * Reads the fields of one route, from just after its opening tag up to its closing tag
+	 * @param reader a reader positioned on the opening Route tag
+	 * @return the route that was read
+	 * @throws DataLoadingException if a field is missing or can't be parsed
+	 * @throws XMLStreamException if the XML itself is malformed
+	 */
+	private Route readRoute(XMLStreamReader reader) throws DataLoadingException, XMLStreamException {
+		String flightNumber = null, dayOfWeek = null, depTime = null, depAirport = null, depCode = null;
+		String arrTime = null, arrAirport = null, arrCode = null, duration = null;
+		
+		while(true) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.END_ELEMENT) {
+				//the Route's own closing tag, since each field consumes its own
+				break;
+			}
+			if(event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			//getElementText() consumes the field's closing tag too
+			switch(reader.getLocalName()) {
+			case "FlightNumber": flightNumber = first(flightNumber, reader); break;
+			case "DayOfWeek": dayOfWeek = first(dayOfWeek, reader); break;
+			case "DepartureTime": depTime = first(depTime, reader); break;
+			case "DepartureAirport": depAirport = first(depAirport, reader); break;
+			case "DepartureAirportIATACode": depCode = first(depCode, reader); break;
+			case "ArrivalTime": arrTime = first(arrTime, reader); break;
+			case "ArrivalAirport": arrAirport = first(arrAirport, reader); break;
+			case "ArrivalAirportIATACode": arrCode = first(arrCode, reader); break;
+			case "Duration": duration = first(duration, reader); break;
+			default: skip(reader); break;
+			}
+		}
 		
+		if(flightNumber == null || dayOfWeek == null || depTime == null || depAirport == null || depCode == null
+				|| arrTime == null || arrAirport == null || arrCode == null || duration == null) {
+			//a field is missing altogether
+			throw new DataLoadingException(new NullPointerException("Route is missing a field")); 
+		}
+		
+		Route r = new Route();
 		try {
-			
-			docBuild = fac.newDocumentBuilder(); 
-			doc = docBuild.parse(p.toFile()) ;
-			Element root = doc.getDocumentElement(); //Gets the root element of the XML file
-            NodeList Routes = root.getElementsByTagName("Route"); 
-            
-
-            for(int i=0; i<Routes.getLength(); i++) {
-            	Route r = new Route();
-            	
-            	Node myNode = Routes.item(i); 
-          	    
-          	   
-          	    Element myElement = (Element) myNode;
-                
-
-                try {
-                	int flightNumber = Integer.parseInt(myElement.getElementsByTagName("FlightNumber").item(0).getTextContent());
-                	r.setFlightNumber(flightNumber); 
-                }
-                
-                catch(Exception e){
-                	throw new DataLoadingException(e); 
-                }
-                
-                try {
-                	String dayOfWeek = myElement.getElementsByTagName("DayOfWeek").item(0).getTextContent(); 
-                    r.setDayOfWeek(dayOfWeek);
- 
-                }
-                
-                catch(Exception e){
-                	throw new DataLoadingException(e); 
-                }
-
-                LocalTime depTime = LocalTime.parse(myElement.getElementsByTagName("DepartureTime").item(0).getTextContent()); 
-                LocalTime arrTime = LocalTime.parse(myElement.getElementsByTagName("ArrivalTime").item(0).getTextContent()); 
-                Duration dur = Duration.parse(myElement.getElementsByTagName("Duration").item(0).getTextContent()); 
-                
-                r.setDepartureTime(depTime);
-                r.setDepartureAirport(myElement.getElementsByTagName("DepartureAirport").item(0).getTextContent());
-                r.setDepartureAirportCode(myElement.getElementsByTagName("DepartureAirportIATACode").item(0).getTextContent());
-                r.setArrivalTime(arrTime);
-                r.setArrivalAirport(myElement.getElementsByTagName("ArrivalAirport").item(0).getTextContent());
-                r.setArrivalAirportCode(myElement.getElementsByTagName("ArrivalAirportIATACode").item(0).getTextContent());
-                r.setDuration(dur);
-                
-                
-                routes.add(r); 
-                
-
-            }
+			r.setFlightNumber(Integer.parseInt(flightNumber)); 
+			r.setDayOfWeek(dayOfWeek);
+			r.setDepartureTime(LocalTime.parse(depTime));
+			r.setDepartureAirport(depAirport);
+			r.setDepartureAirportCode(depCode);
+			r.setArrivalTime(LocalTime.parse(arrTime));
+			r.setArrivalAirport(arrAirport);
+			r.setArrivalAirportCode(arrCode);
+			r.setDuration(Duration.parse(duration));
+		}
+		catch(RuntimeException e) {
+			throw new DataLoadingException(e); 
+		}
+		return r;
+	}
 
-		
-	}	catch(ParserConfigurationException | SAXException | IOException | NullPointerException  e) {
-		throw new DataLoadingException(e); 
-    	
-    }
- 
+	/**
+	 * Reads the text of a field, keeping the value it already had if it appeared earlier in the route
+	 * @param value the value read so far, or null if the field hasn't appeared yet
+	 * @param reader a reader positioned on the field's opening tag
+	 * @return the value to keep
+	 * @throws XMLStreamException if the field has elements inside it, or the XML is malformed
+	 */
+	private static String first(String value, XMLStreamReader reader) throws XMLStreamException {
+		String text = reader.getElementText();
+		return value == null ? text : value;
+	}
+	
+	/**
+	 * Skips an element we don't know, along with everything inside it
+	 * @param reader a reader positioned on the element's opening tag, which is left on its closing tag
+	 * @throws XMLStreamException if the XML is malformed
+	 */
+	private static void skip(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while(depth > 0) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			}
+			else if(event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
 	}
 
 	/**
@@ -213,7 +333,12 @@ public class RouteDAO implements IRouteDAO {
 	@Override
 	public void reset() {
 		// TODO Auto-generated method stub
-		routes.removeAll(routes); 
+		routes.clear(); 
+		byDay.clear();
+		byDayView.clear();
+		byAirportAndDay.clear();
+		byAirportAndDayView.clear();
+		byAirport.clear();
 	}
 
 }
@@ -0,0 +1,109 @@
+package solution;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * A ScheduleDelta describes a change to the resources or routes behind a schedule, e.g. an aircraft going
+ * tech, crew calling in sick or a route being added, for a ScheduleRepairer to repair the schedule around.
+ * Aircraft, crew and routes are told apart by identity, so anything removed must be the same object the DAOs handed out
+ */
+public class ScheduleDelta {
+	private final List<Aircraft> removedAircraft = new ArrayList<>();
+	private final List<Aircraft> addedAircraft = new ArrayList<>();
+	private final List<Crew> removedCrew = new ArrayList<>();
+	private final List<Crew> addedCrew = new ArrayList<>();
+	private final List<Route> removedRoutes = new ArrayList<>();
+	private final List<Route> addedRoutes = new ArrayList<>();
+
+	/**
+	 * Takes an aircraft out of service, so every flight it was allocated needs another
+	 * @param a the aircraft to remove
+	 */
+	public void removeAircraft(Aircraft a) {
+		removedAircraft.add(a);
+	}
+
+	/**
+	 * Brings an aircraft into service
+	 * @param a the aircraft to add
+	 */
+	public void addAircraft(Aircraft a) {
+		addedAircraft.add(a);
+	}
+
+	/**
+	 * Takes a crew member off duty, so every flight they were allocated needs someone else
+	 * @param c the pilot or cabin crew member to remove
+	 */
+	public void removeCrew(Crew c) {
+		removedCrew.add(c);
+	}
+
+	/**
+	 * Brings a crew member onto duty
+	 * @param c the pilot or cabin crew member to add
+	 * @throws IllegalArgumentException if they are neither a Pilot nor CabinCrew
+	 */
+	public void addCrew(Crew c) {
+		if(!(c instanceof Pilot) && !(c instanceof CabinCrew)) {
+			throw new IllegalArgumentException("Crew must be either a Pilot or CabinCrew");
+		}
+		addedCrew.add(c);
+	}
+
+	/**
+	 * Stops flying a route, so its flights are dropped from the schedule
+	 * @param r the route to remove
+	 */
+	public void removeRoute(Route r) {
+		removedRoutes.add(r);
+	}
+
+	/**
+	 * Starts flying a route, so its flights within the horizon need allocating
+	 * @param r the route to add
+	 */
+	public void addRoute(Route r) {
+		addedRoutes.add(r);
+	}
+
+	/**
+	 * Checks whether this changes anything at all
+	 * @return true if nothing has been added or removed
+	 */
+	public boolean isEmpty() {
+		return removedAircraft.isEmpty() && addedAircraft.isEmpty() && removedCrew.isEmpty() && addedCrew.isEmpty()
+				&& removedRoutes.isEmpty() && addedRoutes.isEmpty();
+	}
+
+	List<Aircraft> getRemovedAircraft() {
+		return Collections.unmodifiableList(removedAircraft);
+	}
+
+	List<Aircraft> getAddedAircraft() {
+		return Collections.unmodifiableList(addedAircraft);
+	}
+
+	List<Crew> getRemovedCrew() {
+		return Collections.unmodifiableList(removedCrew);
+	}
+
+	List<Crew> getAddedCrew() {
+		return Collections.unmodifiableList(addedCrew);
+	}
+
+	List<Route> getRemovedRoutes() {
+		return Collections.unmodifiableList(removedRoutes);
+	}
+
+	List<Route> getAddedRoutes() {
+		return Collections.unmodifiableList(addedRoutes);
+	}
+}
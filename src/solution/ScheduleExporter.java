@@ -0,0 +1,439 @@
+package solution;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.Schedule;
+
+/**
+ * The ScheduleExporter writes out the completed flights of a schedule, one row per flight with its aircraft
+ * and crew, as CSV or in a compact binary form. Rows are written straight into one buffer, which is handed to
+ * the channel whenever it fills, so no row is ever built as a String. Beyond the list of flights the Schedule hands
+ * out, memory use doesn't grow with the schedule, except for one entry per distinct string in the binary form.
+ *
+ * The CSV has a header line, then one line per flight:
+ * flight number, departure airport, departure time, arrival airport, landing time, aircraft tail code, captain,
+ * first officer and cabin crew. Times are ISO-8601 local date-times, crew are "forename surname", and the cabin
+ * crew are separated by semicolons. Fields are quoted when they need to be.
+ *
+ * The binary form is big-endian. It starts with the int MAGIC, the int VERSION and the int number of rows. Each row is:
+ * the int flight number; departure and landing as long seconds since 1970-01-01T00:00 in local time; then
+ * string references for the departure airport, arrival airport, tail code, captain and first officer;
+ * a short count of cabin crew and a string reference for each.
+ * A string reference is an int: -1 for none, otherwise the string's place in the order strings first appear.
+ * Where a string appears for the first time its reference is followed by its length as an unsigned short and its
+ * UTF-8 bytes, so a reader can keep a list of strings and tell a new one by its reference being the list's size.
+ */
+public class ScheduleExporter {
+
+	//"JSCH", then the version, which changes whenever the binary layout does
+	public static final int MAGIC = 0x4A534348;
+	public static final int VERSION = 1;
+
+	//how big the buffer is, by default
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	//enough room for the longest run of fixed width fields in a row
+	private static final int MIN_BUFFER_SIZE = 64;
+
+	private static final byte[] CSV_HEADER = "flight_number,departure_airport,departure,arrival_airport,landing,aircraft,captain,first_officer,cabin_crew\n"
+			.getBytes(StandardCharsets.US_ASCII);
+
+	private final ByteBuffer buf;
+
+	/**
+	 * Creates an exporter with a buffer of the default size
+	 */
+	public ScheduleExporter() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates an exporter
+	 * @param bufferSize how many bytes to gather before writing them to the channel
+	 * @throws IllegalArgumentException if it's less than 64
+	 */
+	public ScheduleExporter(int bufferSize) {
+		if(bufferSize < MIN_BUFFER_SIZE) {
+			throw new IllegalArgumentException("Buffer must be at least " + MIN_BUFFER_SIZE + " bytes");
+		}
+		buf = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Writes the completed flights of a schedule to a CSV file
+	 * @param schedule the schedule to export
+	 * @param file the file to write, which is replaced if it exists
+	 * @return the number of flights written
+	 * @throws IOException if the file can't be written
+	 */
+	public int exportCsv(Schedule schedule, Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return exportCsv(schedule, channel);
+		}
+	}
+
+	/**
+	 * Writes the completed flights of a schedule to a file in the binary form
+	 * @param schedule the schedule to export
+	 * @param file the file to write, which is replaced if it exists
+	 * @return the number of flights written
+	 * @throws IOException if the file can't be written
+	 */
+	public int exportBinary(Schedule schedule, Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return exportBinary(schedule, channel);
+		}
+	}
+
+	/**
+	 * Writes the completed flights of a schedule as CSV
+	 * @param schedule the schedule to export
+	 * @param out the channel to write to, which is left open
+	 * @return the number of flights written
+	 * @throws IOException if the channel can't be written to
+	 */
+	public int exportCsv(Schedule schedule, WritableByteChannel out) throws IOException {
+		List<FlightInfo> flights = schedule.getCompletedAllocations();
+		buf.clear();
+		put(out, CSV_HEADER);
+		for(FlightInfo f : flights) {
+			//the strings make room for themselves, everything else is made room for before each run of fields
+			ensure(out, MIN_BUFFER_SIZE);
+			number(f.getFlight().getFlightNumber());
+			buf.put((byte) ',');
+			csv(out, f.getFlight().getDepartureAirportCode());
+			ensure(out, MIN_BUFFER_SIZE);
+			buf.put((byte) ',');
+			dateTime(f.getDepartureDateTime());
+			buf.put((byte) ',');
+			csv(out, f.getFlight().getArrivalAirportCode());
+			ensure(out, MIN_BUFFER_SIZE);
+			buf.put((byte) ',');
+			dateTime(f.getLandingDateTime());
+			buf.put((byte) ',');
+			Aircraft a = schedule.getAircraftFor(f);
+			csv(out, a == null ? null : a.getTailCode());
+			ensure(out, 1);
+			buf.put((byte) ',');
+			csvName(out, schedule.getCaptainOf(f));
+			ensure(out, 1);
+			buf.put((byte) ',');
+			csvName(out, schedule.getFirstOfficerOf(f));
+			ensure(out, 1);
+			buf.put((byte) ',');
+			List<CabinCrew> cabinCrew = schedule.getCabinCrewOf(f);
+			if(cabinCrew != null) {
+				boolean quoted = false;
+				for(CabinCrew c : cabinCrew) {
+					if(needsQuotes(c.getForename()) || needsQuotes(c.getSurname())) {
+						quoted = true;
+					}
+				}
+				if(quoted) {
+					ensure(out, 1);
+					buf.put((byte) '"');
+				}
+				for(int i=0; i<cabinCrew.size(); i++) {
+					if(i > 0) {
+						ensure(out, 1);
+						buf.put((byte) ';');
+					}
+					name(out, cabinCrew.get(i), quoted);
+				}
+				if(quoted) {
+					ensure(out, 1);
+					buf.put((byte) '"');
+				}
+			}
+			ensure(out, 1);
+			buf.put((byte) '\n');
+		}
+		flush(out);
+		return flights.size();
+	}
+
+	/**
+	 * Writes the completed flights of a schedule in the binary form
+	 * @param schedule the schedule to export
+	 * @param out the channel to write to, which is left open
+	 * @return the number of flights written
+	 * @throws IOException if the channel can't be written to
+	 */
+	public int exportBinary(Schedule schedule, WritableByteChannel out) throws IOException {
+		List<FlightInfo> flights = schedule.getCompletedAllocations();
+		//references for every string written so far, so each is only written once; crew and aircraft
+		//are looked up by identity, so their names aren't put together again for every flight
+		Map<String, Integer> strings = new HashMap<>();
+		Map<Object, Integer> resources = new IdentityHashMap<>();
+
+		buf.clear();
+		buf.putInt(MAGIC).putInt(VERSION).putInt(flights.size());
+		for(FlightInfo f : flights) {
+			ensure(out, 32);
+			buf.putInt(f.getFlight().getFlightNumber());
+			buf.putLong(f.getDepartureDateTime().toEpochSecond(ZoneOffset.UTC));
+			buf.putLong(f.getLandingDateTime().toEpochSecond(ZoneOffset.UTC));
+			reference(out, strings, f.getFlight().getDepartureAirportCode());
+			reference(out, strings, f.getFlight().getArrivalAirportCode());
+			reference(out, strings, resources, schedule.getAircraftFor(f));
+			reference(out, strings, resources, schedule.getCaptainOf(f));
+			reference(out, strings, resources, schedule.getFirstOfficerOf(f));
+			List<CabinCrew> cabinCrew = schedule.getCabinCrewOf(f);
+			int count = cabinCrew == null ? 0 : cabinCrew.size();
+			ensure(out, 2);
+			buf.putShort((short) count);
+			for(int i=0; i<count; i++) {
+				reference(out, strings, resources, cabinCrew.get(i));
+			}
+		}
+		flush(out);
+		return flights.size();
+	}
+
+	/**
+	 * Writes the reference for an aircraft's tail code or a crew member's name, only working it out the first time
+	 */
+	private void reference(WritableByteChannel out, Map<String, Integer> strings, Map<Object, Integer> resources, Object resource) throws IOException {
+		if(resource == null) {
+			ensure(out, 4);
+			buf.putInt(-1);
+			return;
+		}
+		Integer known = resources.get(resource);
+		if(known != null) {
+			ensure(out, 4);
+			buf.putInt(known);
+			return;
+		}
+		String name;
+		if(resource instanceof Aircraft) {
+			name = ((Aircraft) resource).getTailCode();
+		}
+		else {
+			Crew c = (Crew) resource;
+			name = c.getForename() + " " + c.getSurname();
+		}
+		resources.put(resource, reference(out, strings, name));
+	}
+
+	/**
+	 * Writes a string's reference, followed by the string itself if this is the first time it has appeared
+	 * @return the reference
+	 */
+	private int reference(WritableByteChannel out, Map<String, Integer> strings, String s) throws IOException {
+		if(s == null) {
+			ensure(out, 4);
+			buf.putInt(-1);
+			return -1;
+		}
+		Integer known = strings.get(s);
+		if(known != null) {
+			ensure(out, 4);
+			buf.putInt(known);
+			return known;
+		}
+		int id = strings.size();
+		strings.put(s, id);
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > 0xFFFF) {
+			throw new IOException("String too long to export: " + s.substring(0, 32) + "...");
+		}
+		ensure(out, 6);
+		buf.putInt(id).putShort((short) bytes.length);
+		put(out, bytes);
+		return id;
+	}
+
+	/**
+	 * Writes some bytes, straight to the channel if they could never fit in the buffer
+	 */
+	private void put(WritableByteChannel out, byte[] bytes) throws IOException {
+		if(bytes.length > buf.capacity()) {
+			flush(out);
+			ByteBuffer direct = ByteBuffer.wrap(bytes);
+			while(direct.hasRemaining()) {
+				out.write(direct);
+			}
+		}
+		else {
+			ensure(out, bytes.length);
+			buf.put(bytes);
+		}
+	}
+
+	/**
+	 * Writes a CSV field, quoting it if it has a comma, quote or line break in it
+	 */
+	private void csv(WritableByteChannel out, String s) throws IOException {
+		if(s == null) {
+			return;
+		}
+		boolean quoted = needsQuotes(s);
+		if(quoted) {
+			ensure(out, 1);
+			buf.put((byte) '"');
+		}
+		text(out, s, quoted);
+		if(quoted) {
+			ensure(out, 1);
+			buf.put((byte) '"');
+		}
+	}
+
+	/**
+	 * Writes a crew member's name as a CSV field
+	 */
+	private void csvName(WritableByteChannel out, Crew c) throws IOException {
+		if(c == null) {
+			return;
+		}
+		boolean quoted = needsQuotes(c.getForename()) || needsQuotes(c.getSurname());
+		if(quoted) {
+			ensure(out, 1);
+			buf.put((byte) '"');
+		}
+		name(out, c, quoted);
+		if(quoted) {
+			ensure(out, 1);
+			buf.put((byte) '"');
+		}
+	}
+
+	/**
+	 * Writes "forename surname", doubling any quotes if the field is quoted
+	 */
+	private void name(WritableByteChannel out, Crew c, boolean quoted) throws IOException {
+		text(out, c.getForename(), quoted);
+		ensure(out, 1);
+		buf.put((byte) ' ');
+		text(out, c.getSurname(), quoted);
+	}
+
+	private static boolean needsQuotes(String s) {
+		if(s == null) {
+			return false;
+		}
+		for(int i=0; i<s.length(); i++) {
+			char ch = s.charAt(i);
+			if(ch == ',' || ch == '"' || ch == ';' || ch == '\n' || ch == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes a string as UTF-8, a character at a time so ASCII needs no copy of it, doubling quotes if asked
+	 */
+	private void text(WritableByteChannel out, String s, boolean doubleQuotes) throws IOException {
+		if(s == null) {
+			return;
+		}
+		for(int i=0; i<s.length(); i++) {
+			char ch = s.charAt(i);
+			if(ch < 0x80) {
+				ensure(out, 2);
+				if(ch == '"' && doubleQuotes) {
+					buf.put((byte) '"');
+				}
+				buf.put((byte) ch);
+			}
+			else {
+				//the rest goes through the encoder, which handles surrogate pairs
+				byte[] bytes = s.substring(i).getBytes(StandardCharsets.UTF_8);
+				for(byte b : bytes) {
+					ensure(out, 2);
+					if(b == '"' && doubleQuotes) {
+						buf.put((byte) '"');
+					}
+					buf.put(b);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes a date-time as ISO-8601, the way LocalDateTime.toString() does for whole seconds
+	 */
+	private void dateTime(LocalDateTime t) {
+		digits(t.getYear(), 4);
+		buf.put((byte) '-');
+		digits(t.getMonthValue(), 2);
+		buf.put((byte) '-');
+		digits(t.getDayOfMonth(), 2);
+		buf.put((byte) 'T');
+		digits(t.getHour(), 2);
+		buf.put((byte) ':');
+		digits(t.getMinute(), 2);
+		if(t.getSecond() != 0) {
+			buf.put((byte) ':');
+			digits(t.getSecond(), 2);
+		}
+	}
+
+	/**
+	 * Writes a non-negative number with at least the given number of digits, padded with zeros
+	 */
+	private void digits(long value, int width) {
+		int start = buf.position();
+		do {
+			buf.put((byte) ('0' + value % 10));
+			value /= 10;
+			width--;
+		} while(value > 0 || width > 0);
+		//the digits went in backwards, so turn them round
+		for(int i=start, j=buf.position() - 1; i<j; i++, j--) {
+			byte b = buf.get(i);
+			buf.put(i, buf.get(j));
+			buf.put(j, b);
+		}
+	}
+
+	/**
+	 * Writes an int in decimal
+	 */
+	private void number(int value) {
+		long n = value;
+		if(n < 0) {
+			buf.put((byte) '-');
+			n = -n;
+		}
+		digits(n, 1);
+	}
+
+	/**
+	 * Makes sure the buffer has room for the given number of bytes, writing it out first if it hasn't
+	 */
+	private void ensure(WritableByteChannel out, int bytes) throws IOException {
+		if(buf.remaining() < bytes) {
+			flush(out);
+		}
+	}
+
+	/**
+	 * Writes everything in the buffer to the channel, and empties it
+	 */
+	private void flush(WritableByteChannel out) throws IOException {
+		buf.flip();
+		while(buf.hasRemaining()) {
+			out.write(buf);
+		}
+		buf.clear();
+	}
+}
@@ -0,0 +1,237 @@
+package solution;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.IPassengerNumbersDAO;
+import baseclasses.IRouteDAO;
+import baseclasses.Pilot;
+import baseclasses.Route;
+import baseclasses.Schedule;
+
+/**
+ * The ScheduleRepairer repairs an existing schedule after a change to its aircraft, crew or routes, rather
+ * than generating the whole horizon again. Only the rotations a change touches are allocated again: those
+ * flown by an aircraft or crew member that was removed, those that lost a leg to a removed route, and any
+ * flights that are new or were never completed. Everything else keeps exactly the aircraft and crew it had.
+ * A Schedule can't gain or lose flights once made, so the repaired schedule is a new one over the same horizon,
+ * and the schedule being repaired is left as it was.
+ * The repairer keeps the aircraft, crew and routes as they are after each change, so changes can be applied one after another.
+ */
+public class ScheduleRepairer {
+
+	private IAircraftDAO aircraftDAO;
+	private ICrewDAO crewDAO;
+	private IRouteDAO routeDAO;
+	private final IPassengerNumbersDAO passengerNumbersDAO;
+
+	//how the last call to repair() went
+	private int flightsKept;
+	private int flightsReallocated;
+
+	/**
+	 * Creates a repairer for schedules made from the given DAOs. The DAOs themselves are never changed
+	 * @param aircraftDAO the aircraft the schedules were made with
+	 * @param crewDAO the crew the schedules were made with
+	 * @param routeDAO the routes the schedules were made from
+	 * @param passengerNumbersDAO the passenger forecasts used to size the aircraft
+	 */
+	public ScheduleRepairer(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO) {
+		this.aircraftDAO = aircraftDAO;
+		this.crewDAO = crewDAO;
+		this.routeDAO = routeDAO;
+		this.passengerNumbersDAO = passengerNumbersDAO;
+	}
+
+	/**
+	 * Applies a change and repairs a schedule around it
+	 * @param schedule the schedule to repair, made from the aircraft, crew and routes as they were before the change
+	 * @param delta what has been added and removed
+	 * @return a new schedule over the same horizon, with everything the change didn't touch allocated as before
+	 */
+	public Schedule repair(Schedule schedule, ScheduleDelta delta) {
+		apply(delta);
+
+		Set<Aircraft> removedAircraft = identitySet(delta.getRemovedAircraft());
+		Set<Crew> removedCrew = identitySet(delta.getRemovedCrew());
+		Set<Route> removedRoutes = identitySet(delta.getRemovedRoutes());
+
+		//every rotation with a leg the change touches is allocated again as a whole
+		Set<FlightInfo> completed = identitySet(schedule.getCompletedAllocations());
+		List<FlightInfo> oldFlights = new ArrayList<>(completed);
+		oldFlights.addAll(schedule.getRemainingAllocations());
+		Set<FlightInfo> affected = identitySet(Collections.emptyList());
+		for(List<FlightInfo> rotation : new RotationBuilder(oldFlights).build()) {
+			for(FlightInfo leg : rotation) {
+				if(isAffected(schedule, completed, leg, removedAircraft, removedCrew, removedRoutes)) {
+					affected.addAll(rotation);
+					break;
+				}
+			}
+		}
+
+		Map<Route, Map<LocalDateTime, FlightInfo>> keep = new IdentityHashMap<>();
+		for(FlightInfo f : completed) {
+			if(!affected.contains(f)) {
+				keep.computeIfAbsent(f.getFlight(), k -> new HashMap<>()).put(f.getDepartureDateTime(), f);
+			}
+		}
+
+		Schedule repaired = new Schedule(routeDAO, schedule.getStartDate(), schedule.getEndDate());
+		RotationAllocator allocator = new RotationAllocator(aircraftDAO, crewDAO, passengerNumbersDAO, repaired);
+		//the repaired rotations are fitted around what is kept, so look for crew with gaps in their bookings
+		allocator.setFillGaps(true);
+
+		flightsKept = 0;
+		for(FlightInfo f : new ArrayList<>(repaired.getRemainingAllocations())) {
+			Map<LocalDateTime, FlightInfo> sameRoute = keep.get(f.getFlight());
+			FlightInfo old = sameRoute == null ? null : sameRoute.get(f.getDepartureDateTime());
+			if(old != null && allocator.allocate(Collections.singletonList(f), new RotationAllocator.Assignment(schedule, old))) {
+				flightsKept++;
+			}
+		}
+
+		//whatever is left is new, was touched by the change, or never was completed
+		List<List<FlightInfo>> rotations = new RotationBuilder(new ArrayList<>(repaired.getRemainingAllocations())).build();
+		flightsReallocated = 0;
+		for(List<FlightInfo> rotation : rotations) {
+			allocator.allocate(rotation);
+			flightsReallocated += rotation.size();
+		}
+		return repaired;
+	}
+
+	/**
+	 * Returns the aircraft as they are after the changes applied so far
+	 * @return the current aircraft
+	 */
+	public IAircraftDAO getAircraftDAO() {
+		return aircraftDAO;
+	}
+
+	/**
+	 * Returns the crew as they are after the changes applied so far
+	 * @return the current crew
+	 */
+	public ICrewDAO getCrewDAO() {
+		return crewDAO;
+	}
+
+	/**
+	 * Returns the routes as they are after the changes applied so far
+	 * @return the current routes
+	 */
+	public IRouteDAO getRouteDAO() {
+		return routeDAO;
+	}
+
+	/**
+	 * Returns how many flights the last call to repair() kept as they were
+	 * @return the number of flights kept
+	 */
+	public int getFlightsKept() {
+		return flightsKept;
+	}
+
+	/**
+	 * Returns how many flights the last call to repair() allocated again, whether or not they could be completed
+	 * @return the number of flights allocated again
+	 */
+	public int getFlightsReallocated() {
+		return flightsReallocated;
+	}
+
+	/**
+	 * Checks whether a flight has to be allocated again: it was never completed, it is on a removed route,
+	 * or an aircraft or crew member it was allocated has been removed
+	 */
+	private static boolean isAffected(Schedule schedule, Set<FlightInfo> completed, FlightInfo f, Set<Aircraft> removedAircraft, Set<Crew> removedCrew, Set<Route> removedRoutes) {
+		if(!completed.contains(f) || removedRoutes.contains(f.getFlight()) || removedAircraft.contains(schedule.getAircraftFor(f))) {
+			return true;
+		}
+		if(removedCrew.contains(schedule.getCaptainOf(f)) || removedCrew.contains(schedule.getFirstOfficerOf(f))) {
+			return true;
+		}
+		for(CabinCrew c : schedule.getCabinCrewOf(f)) {
+			if(removedCrew.contains(c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Brings the aircraft, crew and routes up to date with a change, copying any DAO it changes
+	 */
+	private void apply(ScheduleDelta delta) {
+		if(!delta.getRemovedAircraft().isEmpty() || !delta.getAddedAircraft().isEmpty()) {
+			Set<Aircraft> removed = identitySet(delta.getRemovedAircraft());
+			AircraftDAO updated = new AircraftDAO();
+			for(Aircraft a : aircraftDAO.getAllAircraft()) {
+				if(!removed.contains(a)) {
+					updated.add(a);
+				}
+			}
+			for(Aircraft a : delta.getAddedAircraft()) {
+				updated.add(a);
+			}
+			aircraftDAO = updated;
+		}
+
+		if(!delta.getRemovedCrew().isEmpty() || !delta.getAddedCrew().isEmpty()) {
+			Set<Crew> removed = identitySet(delta.getRemovedCrew());
+			CrewDAO updated = new CrewDAO();
+			for(Pilot p : crewDAO.getAllPilots()) {
+				if(!removed.contains(p)) {
+					updated.add(p);
+				}
+			}
+			for(CabinCrew c : crewDAO.getAllCabinCrew()) {
+				if(!removed.contains(c)) {
+					updated.add(c);
+				}
+			}
+			for(Crew c : delta.getAddedCrew()) {
+				if(c instanceof Pilot) {
+					updated.add((Pilot) c);
+				}
+				else {
+					updated.add((CabinCrew) c);
+				}
+			}
+			crewDAO = updated;
+		}
+
+		if(!delta.getRemovedRoutes().isEmpty() || !delta.getAddedRoutes().isEmpty()) {
+			Set<Route> removed = identitySet(delta.getRemovedRoutes());
+			List<Route> kept = new ArrayList<>();
+			for(Route r : routeDAO.getAllRoutes()) {
+				if(!removed.contains(r)) {
+					kept.add(r);
+				}
+			}
+			kept.addAll(delta.getAddedRoutes());
+			//added all at once, so the day views are only made once
+			RouteDAO updated = new RouteDAO();
+			updated.addAll(kept);
+			routeDAO = updated;
+		}
+	}
+
+	private static <T> Set<T> identitySet(List<T> items) {
+		Set<T> set = Collections.newSetFromMap(new IdentityHashMap<>());
+		set.addAll(items);
+		return set;
+	}
+}
@@ -0,0 +1,337 @@
+package solution;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * SchedulerMetrics records where a scheduler's time goes: the wall time spent in each phase of allocating a
+ * rotation, how often the Schedule is asked about conflicts and turns an allocation down, and a histogram of
+ * how long each leg takes to allocate. Everything is kept in counters that many threads can add to at once,
+ * so one instance can be shared by every scheduler in a process and read at any time through snapshot() or JMX.
+ * Recording costs a System.nanoTime() call and an add or two per phase, which is small next to the phase itself.
+ */
+public class SchedulerMetrics implements SchedulerMetricsMXBean {
+
+	/**
+	 * The phases a scheduling run is timed in
+	 */
+	public enum Phase {
+		//grouping the flights into rotations
+		ROTATION_PAIRING,
+		//reading the passenger forecasts to size the aircraft
+		PASSENGER_LOOKUP,
+		//choosing an aircraft and allocating it to each leg
+		AIRCRAFT_SELECTION,
+		//finding and allocating the cabin crew
+		CABIN_CREW,
+		//finding and allocating the captain and first officer
+		PILOTS,
+		//completing the legs
+		COMPLETION,
+		//taking rotations off their aircraft and crew to allocate them again
+		UNALLOCATION
+	}
+
+	//the histogram has a bucket per power of two nanoseconds, so bucket b holds times below 2^b ns
+	private static final int BUCKETS = 64;
+
+	//used when no metrics are wanted: records nothing, and doesn't even read the clock
+	static final SchedulerMetrics DISABLED = new SchedulerMetrics(false);
+
+	private final boolean enabled;
+	private final Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+	private final Map<Phase, LongAdder> phaseCounts = new EnumMap<>(Phase.class);
+	private final LongAdder conflictChecks = new LongAdder();
+	private final LongAdder doubleBookings = new LongAdder();
+	private final LongAdder invalidAllocations = new LongAdder();
+	private final AtomicLongArray legLatency = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Creates a set of metrics, all zero
+	 */
+	public SchedulerMetrics() {
+		this(true);
+	}
+
+	private SchedulerMetrics(boolean enabled) {
+		this.enabled = enabled;
+		for(Phase p : Phase.values()) {
+			phaseNanos.put(p, new LongAdder());
+			phaseCounts.put(p, new LongAdder());
+		}
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, so they can be read over JMX
+	 * @param name a name to tell these metrics apart from any others, e.g. the name of the scheduler
+	 * @return the name they were registered under
+	 * @throws JMException if the name isn't valid or is already taken
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("solution:type=SchedulerMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Reads the clock at the start of a phase
+	 * @return the time to pass to record() at the end of the phase
+	 */
+	long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the end of a phase
+	 * @param phase the phase that ended
+	 * @param started what start() returned when it began
+	 */
+	void record(Phase phase, long started) {
+		if(enabled) {
+			phaseNanos.get(phase).add(System.nanoTime() - started);
+			phaseCounts.get(phase).increment();
+		}
+	}
+
+	/**
+	 * Records the time taken to allocate a rotation, shared out equally between its legs
+	 * @param legs how many legs the rotation has
+	 * @param started what start() returned when allocating it began
+	 */
+	void recordLegs(int legs, long started) {
+		if(enabled && legs > 0) {
+			long perLeg = (System.nanoTime() - started) / legs;
+			legLatency.addAndGet(bucket(perLeg), legs);
+		}
+	}
+
+	/**
+	 * Records a call to Schedule that checks for conflicts
+	 */
+	void conflictCheck() {
+		if(enabled) {
+			conflictChecks.increment();
+		}
+	}
+
+	/**
+	 * Records a DoubleBookedException
+	 */
+	void doubleBooking() {
+		if(enabled) {
+			doubleBookings.increment();
+		}
+	}
+
+	/**
+	 * Records an InvalidAllocationException
+	 */
+	void invalidAllocation() {
+		if(enabled) {
+			invalidAllocations.increment();
+		}
+	}
+
+	/**
+	 * Takes a copy of every figure as it is now
+	 * @return the copy, which doesn't change as more is recorded
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	@Override
+	public Map<String, Long> getPhaseNanos() {
+		return byName(phaseNanos);
+	}
+
+	@Override
+	public Map<String, Long> getPhaseCounts() {
+		return byName(phaseCounts);
+	}
+
+	@Override
+	public long getConflictChecks() {
+		return conflictChecks.sum();
+	}
+
+	@Override
+	public long getDoubleBookings() {
+		return doubleBookings.sum();
+	}
+
+	@Override
+	public long getInvalidAllocations() {
+		return invalidAllocations.sum();
+	}
+
+	@Override
+	public long getLegs() {
+		return snapshot().getLegs();
+	}
+
+	@Override
+	public long getLegLatencyMedianNanos() {
+		return snapshot().getLegLatencyPercentile(50);
+	}
+
+	@Override
+	public long getLegLatency99thPercentileNanos() {
+		return snapshot().getLegLatencyPercentile(99);
+	}
+
+	@Override
+	public long getLegLatencyMaxNanos() {
+		return snapshot().getLegLatencyPercentile(100);
+	}
+
+	@Override
+	public void reset() {
+		for(Phase p : Phase.values()) {
+			phaseNanos.get(p).reset();
+			phaseCounts.get(p).reset();
+		}
+		conflictChecks.reset();
+		doubleBookings.reset();
+		invalidAllocations.reset();
+		for(int b = 0; b < BUCKETS; b++) {
+			legLatency.set(b, 0);
+		}
+	}
+
+	private static Map<String, Long> byName(Map<Phase, LongAdder> adders) {
+		Map<String, Long> values = new LinkedHashMap<>();
+		for(Map.Entry<Phase, LongAdder> e : adders.entrySet()) {
+			values.put(e.getKey().name(), e.getValue().sum());
+		}
+		return values;
+	}
+
+	private static int bucket(long nanos) {
+		return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	/**
+	 * A copy of the metrics taken at one moment
+	 */
+	public static class Snapshot {
+		private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+		private final Map<Phase, Long> phaseCounts = new EnumMap<>(Phase.class);
+		private final long conflictChecks;
+		private final long doubleBookings;
+		private final long invalidAllocations;
+		private final long[] legLatency = new long[BUCKETS];
+		private final long legs;
+
+		private Snapshot(SchedulerMetrics metrics) {
+			for(Phase p : Phase.values()) {
+				phaseNanos.put(p, metrics.phaseNanos.get(p).sum());
+				phaseCounts.put(p, metrics.phaseCounts.get(p).sum());
+			}
+			conflictChecks = metrics.conflictChecks.sum();
+			doubleBookings = metrics.doubleBookings.sum();
+			invalidAllocations = metrics.invalidAllocations.sum();
+			long total = 0;
+			for(int b = 0; b < BUCKETS; b++) {
+				legLatency[b] = metrics.legLatency.get(b);
+				total += legLatency[b];
+			}
+			legs = total;
+		}
+
+		/**
+		 * Returns the total time spent in a phase
+		 * @param phase the phase
+		 * @return the time, in nanoseconds
+		 */
+		public long getPhaseNanos(Phase phase) {
+			return phaseNanos.get(phase);
+		}
+
+		/**
+		 * Returns how many times a phase has run
+		 * @param phase the phase
+		 * @return the number of times it has run
+		 */
+		public long getPhaseCount(Phase phase) {
+			return phaseCounts.get(phase);
+		}
+
+		/**
+		 * Returns how many times an aircraft or crew member was checked against the Schedule's bookings.
+		 * Every allocation made to the Schedule runs one Schedule.hasConflict() check
+		 * @return the number of checks
+		 */
+		public long getConflictChecks() {
+			return conflictChecks;
+		}
+
+		/**
+		 * Returns how many allocations the Schedule turned down with a DoubleBookedException
+		 * @return the number of DoubleBookedExceptions
+		 */
+		public long getDoubleBookings() {
+			return doubleBookings;
+		}
+
+		/**
+		 * Returns how many completions the Schedule turned down with an InvalidAllocationException
+		 * @return the number of InvalidAllocationExceptions
+		 */
+		public long getInvalidAllocations() {
+			return invalidAllocations;
+		}
+
+		/**
+		 * Returns how many legs have been allocated
+		 * @return the number of legs
+		 */
+		public long getLegs() {
+			return legs;
+		}
+
+		/**
+		 * Returns a percentile of the time taken to allocate a leg. The histogram's buckets are powers of two
+		 * nanoseconds wide, so this is the top of the bucket the percentile falls in
+		 * @param percentile the percentile, from 0 to 100
+		 * @return the time, in nanoseconds, or 0 if no legs have been allocated
+		 */
+		public long getLegLatencyPercentile(double percentile) {
+			if(legs == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(legs * percentile / 100));
+			long seen = 0;
+			for(int b = 0; b < BUCKETS; b++) {
+				seen += legLatency[b];
+				if(seen >= rank) {
+					return b == BUCKETS - 1 ? Long.MAX_VALUE : 1L << b;
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		/**
+		 * Describes the snapshot, one figure per line
+		 */
+		@Override
+		public String toString() {
+			StringBuilder s = new StringBuilder();
+			for(Phase p : Phase.values()) {
+				s.append(p).append(": ").append(phaseNanos.get(p) / 1000000).append(" ms over ").append(phaseCounts.get(p)).append(" runs\n");
+			}
+			s.append("conflict checks: ").append(conflictChecks).append('\n');
+			s.append("double bookings: ").append(doubleBookings).append('\n');
+			s.append("invalid allocations: ").append(invalidAllocations).append('\n');
+			s.append("legs: ").append(legs).append(", median under ").append(getLegLatencyPercentile(50))
+					.append(" ns, 99th percentile under ").append(getLegLatencyPercentile(99)).append(" ns\n");
+			return s.toString();
+		}
+	}
+}
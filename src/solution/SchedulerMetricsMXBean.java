@@ -0,0 +1,67 @@
+package solution;
+import java.util.Map;
+
+/**
+ * The management interface of SchedulerMetrics, so its figures can be watched over JMX, e.g. from JConsole
+ */
+public interface SchedulerMetricsMXBean {
+
+	/**
+	 * Returns the total time spent in each phase, by phase name
+	 * @return nanoseconds spent in each phase
+	 */
+	Map<String, Long> getPhaseNanos();
+
+	/**
+	 * Returns how many times each phase has run, by phase name
+	 * @return the number of times each phase has run
+	 */
+	Map<String, Long> getPhaseCounts();
+
+	/**
+	 * Returns how many times an aircraft or crew member was checked against the Schedule's bookings
+	 * @return the number of Schedule.hasConflict() checks
+	 */
+	long getConflictChecks();
+
+	/**
+	 * Returns how many allocations the Schedule turned down with a DoubleBookedException
+	 * @return the number of DoubleBookedExceptions
+	 */
+	long getDoubleBookings();
+
+	/**
+	 * Returns how many completions the Schedule turned down with an InvalidAllocationException
+	 * @return the number of InvalidAllocationExceptions
+	 */
+	long getInvalidAllocations();
+
+	/**
+	 * Returns how many legs have been allocated
+	 * @return the number of legs
+	 */
+	long getLegs();
+
+	/**
+	 * Returns the median time to allocate a leg
+	 * @return the median, in nanoseconds
+	 */
+	long getLegLatencyMedianNanos();
+
+	/**
+	 * Returns the 99th percentile of the time to allocate a leg
+	 * @return the 99th percentile, in nanoseconds
+	 */
+	long getLegLatency99thPercentileNanos();
+
+	/**
+	 * Returns the longest time taken to allocate a leg
+	 * @return the longest time, in nanoseconds
+	 */
+	long getLegLatencyMaxNanos();
+
+	/**
+	 * Sets every figure back to zero
+	 */
+	void reset();
+}
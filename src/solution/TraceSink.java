@@ -0,0 +1,69 @@
+package solution;
+import baseclasses.FlightInfo;
+
+/**
+ * A TraceSink is told what the scheduler is doing as it goes, for debugging. Each kind of event has a level,
+ * and a sink only wants the events at or below the level it was set to, so anything that costs something to
+ * work out before tracing it should check isEnabled() first. OFF takes nothing, and costs nothing.
+ */
+public interface TraceSink {
+
+	/**
+	 * How much detail to trace
+	 */
+	enum Level {
+		//nothing at all
+		OFF,
+		//the legs of each rotation, and progress through the schedule
+		INFO,
+		//every aircraft tried for every leg as well
+		DEBUG
+	}
+
+	//traces nothing
+	TraceSink OFF = new TraceSink() {
+		@Override
+		public boolean isEnabled(Level level) {
+			return false;
+		}
+
+		@Override
+		public void leg(FlightInfo leg) {
+		}
+
+		@Override
+		public void aircraftTried(FlightInfo leg, int position) {
+		}
+
+		@Override
+		public void progress(int completed, int remaining) {
+		}
+	};
+
+	/**
+	 * Checks whether events at a level are wanted
+	 * @param level the level of the event
+	 * @return true if events at that level are traced
+	 */
+	boolean isEnabled(Level level);
+
+	/**
+	 * Traces a leg of a rotation that is about to be allocated, at INFO
+	 * @param leg the leg
+	 */
+	void leg(FlightInfo leg);
+
+	/**
+	 * Traces trying an aircraft on a leg, at DEBUG
+	 * @param leg the leg
+	 * @param position where the aircraft came in the list of those that could fly it
+	 */
+	void aircraftTried(FlightInfo leg, int position);
+
+	/**
+	 * Traces how far through the schedule allocation has got, at INFO
+	 * @param completed how many flights have been completed
+	 * @param remaining how many flights are still to be allocated
+	 */
+	void progress(int completed, int remaining);
+}